@@ -0,0 +1,52 @@
+package by.babanin.vm.benchmark;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+
+/**
+ * Entry point of {@code target/benchmarks.jar}. Takes the usual JMH command line and, after the JMH report, prints
+ * the guest instruction rate of every benchmark that counts instructions in MIPS.
+ */
+public final class Benchmarks {
+
+    private static final String INSTRUCTIONS = "instructions";
+
+    private Benchmarks() {
+    }
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if(options.shouldHelp() || options.shouldList()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        Collection<RunResult> results = new Runner(options).run();
+
+        System.out.println();
+        System.out.printf("%-44s %-44s %8s%n", "Benchmark", "Parameters", "MIPS");
+        for(RunResult result : results) {
+            Result<?> instructions = result.getSecondaryResults().get(INSTRUCTIONS);
+            if(instructions == null) {
+                continue;
+            }
+            double perSecond = instructions.getScore() * toSeconds(instructions.getScoreUnit());
+            System.out.printf("%-44s %-44s %8.1f%n", result.getParams().getBenchmark(),
+                    result.getParams().getParamsKeys().stream()
+                            .map(key -> key + "=" + result.getParams().getParam(key))
+                            .reduce((first, second) -> first + " " + second)
+                            .orElse(""),
+                    perSecond / 1_000_000);
+        }
+    }
+
+    private static double toSeconds(String unit) {
+        return unit.endsWith("/ms") ? 1_000 : unit.endsWith("/us") ? 1_000_000 : 1;
+    }
+}
@@ -0,0 +1,52 @@
+package by.babanin.vm.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import by.babanin.vm.lc3.LC3OperationCode;
+
+/**
+ * Operation code lookup of random instruction words
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+    private static final int INSTRUCTIONS = 1024;
+    private static final byte INSTRUCTION_SIZE = 16;
+
+    private final short[] instructions = new short[INSTRUCTIONS];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for(int i = 0; i < INSTRUCTIONS; i++) {
+            instructions[i] = (short) random.nextInt();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public void valueOf(Blackhole blackhole) {
+        for(short instruction : instructions) {
+            blackhole.consume(LC3OperationCode.valueOf(instruction, INSTRUCTION_SIZE));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package by.babanin.vm.benchmark;
+
+/**
+ * Headless LC-3 programs for {@link RunBenchmark}. They start at x3000, finish with HALT and can be run again
+ * without reloading. PRINT measures the output path, the others the engines.
+ */
+public enum GuestProgram {
+    COUNTDOWN(
+            "0010000000000011" + // LD R0, #3
+            "0001000000111111" + // ADD R0, R0, #-1
+            "0000001111111110" + // BRp #-2
+            "1111000000100101" + // HALT
+            "0111111111111111"), // x7FFF
+    MEMORY_COPY(
+            "1110001000001011" + // LEA R1, #11
+            "0010010000001001" + // LD R2, #9
+            "0010011000000111" + // LD R3, #7
+            "0110100001000000" + // LDR R4, R1, #0
+            "0111100010000000" + // STR R4, R2, #0
+            "0001001001100001" + // ADD R1, R1, #1
+            "0001010010100001" + // ADD R2, R2, #1
+            "0001011011111111" + // ADD R3, R3, #-1
+            "0000001111111010" + // BRp #-6
+            "1111000000100101" + // HALT
+            "0010000000000000" + // x2000 words
+            "0100000000000000"), // to x4000
+    SUBROUTINE(
+            "0010000000000101" + // LD R0, #5
+            "0100100000000101" + // JSR #5
+            "0001000000111111" + // ADD R0, R0, #-1
+            "0000001111111101" + // BRp #-3
+            "1111000000100101" + // HALT
+            "0000000000000000" + // unused
+            "0010000000000000" + // x2000 calls
+            "0001001001100001" + // ADD R1, R1, #1
+            "1100000111000000"), // RET
+    PRINT(
+            "0010001000000110" + // LD R1, #6
+            "1110000000000110" + // LEA R0, #6
+            "1111000000100010" + // PUTS
+            "0001001001111111" + // ADD R1, R1, #-1
+            "0000001111111100" + // BRp #-4
+            "1111000000100101" + // HALT
+            "0000000000000000" + // unused
+            "0000010000000000" + // x0400 lines
+            "0000000001001000" + // 'H'
+            "0000000001100101" + // 'e'
+            "0000000001101100" + // 'l'
+            "0000000001101100" + // 'l'
+            "0000000001101111" + // 'o'
+            "0000000000100001" + // '!'
+            "0000000000001010" + // '\n'
+            "0000000000000000"),
+    ;
+
+    public static final short ORIGIN = 0x3000;
+
+    private final String code;
+
+    GuestProgram(String code) {
+        this.code = code;
+    }
+
+    public String getCode() {
+        return code;
+    }
+}
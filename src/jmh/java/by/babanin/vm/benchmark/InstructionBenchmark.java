@@ -0,0 +1,82 @@
+package by.babanin.vm.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import by.babanin.vm.lc3.LC3OperationCode;
+import by.babanin.vm.lc3.LC3Register;
+import by.babanin.vm.lc3.LC3VirtualMachine;
+
+/**
+ * Decoding and execution of a single instruction of every operation code that does not leave the machine
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstructionBenchmark {
+
+    private static final short PROGRAM_COUNTER = 0x3001;
+    private static final byte INSTRUCTION_SIZE = 16;
+
+    public enum Instruction {
+        BR(0x0E10),     /* BRnzp #16 */
+        ADD(0x1042),    /* ADD R0, R1, R2 */
+        LD(0x2010),     /* LD R0, #16 */
+        ST(0x3010),     /* ST R0, #16 */
+        JSR(0x4810),    /* JSR #16 */
+        AND(0x5065),    /* AND R0, R1, #5 */
+        LDR(0x6041),    /* LDR R0, R1, #1 */
+        STR(0x7041),    /* STR R0, R1, #1 */
+        NOT(0x907F),    /* NOT R0, R1 */
+        LDI(0xA010),    /* LDI R0, #16 */
+        STI(0xB010),    /* STI R0, #16 */
+        JMP(0xC040),    /* JMP R1 */
+        LEA(0xE010),    /* LEA R0, #16 */
+        ;
+
+        private final short word;
+
+        Instruction(int word) {
+            this.word = (short) word;
+        }
+    }
+
+    @Param
+    public Instruction instruction;
+
+    private LC3VirtualMachine virtualMachine;
+    private LC3OperationCode operationCode;
+    private short word;
+
+    @Setup
+    public void setUp() {
+        virtualMachine = new LC3VirtualMachine();
+        virtualMachine.setRegisterValue(LC3Register.R1, (short) 0x4000);
+        virtualMachine.setRegisterValue(LC3Register.R2, (short) 3);
+        /* pointer for LDI and STI */
+        virtualMachine.writeProgram(PROGRAM_COUNTER + 16, "0100000000000000");
+        word = instruction.word;
+        operationCode = LC3OperationCode.valueOf(word, INSTRUCTION_SIZE);
+    }
+
+    @Benchmark
+    public short execute() {
+        virtualMachine.setProgramCounter(PROGRAM_COUNTER);
+        operationCode.execute(virtualMachine, word);
+        return virtualMachine.getRegisterValue(LC3Register.R0);
+    }
+}
@@ -0,0 +1,49 @@
+package by.babanin.vm.benchmark;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import by.babanin.vm.lc3.LC3VirtualMachine;
+
+/**
+ * Loading an object file into a machine the way {@code Launcher} does, relative to the project directory
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoaderBenchmark {
+
+    @Param("programs/2048.obj")
+    public String program;
+
+    private Path path;
+    private LC3VirtualMachine virtualMachine;
+
+    @Setup
+    public void setUp() {
+        path = Paths.get(program);
+        virtualMachine = new LC3VirtualMachine();
+    }
+
+    @Benchmark
+    public LC3VirtualMachine load() {
+        virtualMachine.loadImage(path);
+        return virtualMachine;
+    }
+}
@@ -0,0 +1,119 @@
+package by.babanin.vm.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import by.babanin.vm.VirtualMachineMemory;
+import by.babanin.vm.lc3.LC3Memory;
+import by.babanin.vm.memory.DirectVirtualMachineMemory;
+import by.babanin.vm.memory.LongVirtualMachineMemory;
+import by.babanin.vm.memory.PackedVirtualMachineMemory;
+
+/**
+ * Word reads and writes of the memory backends. The packed memories are bit addressed, so they are measured both on
+ * words aligned to 16 bits and on words split between two cells. The block benchmarks move the same amount of words
+ * that follow each other from the first address in one call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemoryBenchmark {
+
+    private static final int WORDS = 1024;
+    private static final byte INSTRUCTION_SIZE = 16;
+    private static final int PACKED_MEMORY_CELLS = 1 << 12;
+
+    public enum Backend {
+        LC3,
+        LONG_ALIGNED,
+        LONG_SPLIT,
+        DIRECT_ALIGNED,
+        DIRECT_SPLIT,
+    }
+
+    @Param
+    public Backend backend;
+
+    private final long[] addresses = new long[WORDS];
+    private final long[] block = new long[WORDS];
+    private VirtualMachineMemory memory;
+
+    @Setup
+    public void setUp() {
+        for(int i = 0; i < WORDS; i++) {
+            switch(backend) {
+                case LC3:
+                    addresses[i] = 0x3000 + i;
+                    break;
+                case LONG_ALIGNED:
+                case DIRECT_ALIGNED:
+                    addresses[i] = (0x3000L + i) * INSTRUCTION_SIZE;
+                    break;
+                case LONG_SPLIT:
+                case DIRECT_SPLIT:
+                    addresses[i] = (long) i * PackedVirtualMachineMemory.CELL_SIZE + PackedVirtualMachineMemory.CELL_SIZE - 6;
+                    break;
+            }
+        }
+        switch(backend) {
+            case LC3:
+                memory = new LC3Memory();
+                break;
+            case LONG_ALIGNED:
+            case LONG_SPLIT:
+                memory = new LongVirtualMachineMemory(PACKED_MEMORY_CELLS, INSTRUCTION_SIZE);
+                break;
+            case DIRECT_ALIGNED:
+            case DIRECT_SPLIT:
+                memory = new DirectVirtualMachineMemory(PACKED_MEMORY_CELLS, INSTRUCTION_SIZE);
+                break;
+        }
+        write();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public long read() {
+        long sum = 0;
+        for(long address : addresses) {
+            sum += memory.readInstruction(address);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void write() {
+        for(int i = 0; i < WORDS; i++) {
+            memory.writeInstruction(addresses[i], 0xA5A5 ^ i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public long[] readBlock() {
+        memory.readBlock(addresses[0], block, 0, WORDS);
+        return block;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void writeBlock() {
+        memory.writeBlock(addresses[0], block, 0, WORDS);
+    }
+}
@@ -0,0 +1,87 @@
+package by.babanin.vm.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import by.babanin.vm.factory.VirtualMachineFactory;
+import by.babanin.vm.lc3.LC3InMemoryConsole;
+import by.babanin.vm.lc3.LC3VirtualMachine;
+
+/**
+ * Complete runs of the guest programs on every engine, printing into an in-memory console. Besides runs per second
+ * it reports the executed guest instructions per second as the {@code instructions} counter, which
+ * {@link Benchmarks} turns into MIPS.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RunBenchmark {
+
+    public enum Engine {
+        METHOD_REFERENCE,
+        SWITCH,
+        COMPILING,
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+
+        public long instructions;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            instructions = 0;
+        }
+    }
+
+    @Param
+    public Engine engine;
+
+    @Param
+    public GuestProgram program;
+
+    private LC3VirtualMachine virtualMachine;
+    private final LC3InMemoryConsole console = new LC3InMemoryConsole();
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        VirtualMachineFactory factory = new VirtualMachineFactory();
+        switch(engine) {
+            case METHOD_REFERENCE:
+                virtualMachine = (LC3VirtualMachine) factory.lc3VirtualMachine(console);
+                break;
+            case SWITCH:
+                virtualMachine = (LC3VirtualMachine) factory.lc3SwitchVirtualMachine(console);
+                break;
+            case COMPILING:
+                virtualMachine = (LC3VirtualMachine) factory.lc3CompilingVirtualMachine(console);
+                break;
+        }
+        virtualMachine.writeProgram(GuestProgram.ORIGIN, program.getCode());
+    }
+
+    @Benchmark
+    public void run(Counters counters) {
+        long instructionCount = virtualMachine.getInstructionCount();
+        virtualMachine.run();
+        counters.instructions += virtualMachine.getInstructionCount() - instructionCount;
+        console.clearOutput();
+    }
+}
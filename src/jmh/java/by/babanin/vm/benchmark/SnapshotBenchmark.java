@@ -0,0 +1,78 @@
+package by.babanin.vm.benchmark;
+
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import by.babanin.vm.lc3.LC3Register;
+import by.babanin.vm.lc3.LC3Snapshot;
+import by.babanin.vm.lc3.LC3VirtualMachine;
+
+/**
+ * Checkpoints and state hashes of a machine holding programs/2048.obj, relative to the project directory. Between
+ * the incremental checkpoints, rollbacks and hashes the guest writes a single word.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    private static final String WORD = "0000000000000001";
+
+    private LC3VirtualMachine virtualMachine;
+    private LC3Snapshot snapshot;
+
+    @Setup
+    public void setUp() {
+        virtualMachine = new LC3VirtualMachine();
+        virtualMachine.loadImage(Paths.get("programs/2048.obj"));
+        snapshot = virtualMachine.checkpoint();
+        virtualMachine.stateHash();
+    }
+
+    @Benchmark
+    public LC3Snapshot checkpoint() {
+        return virtualMachine.checkpoint();
+    }
+
+    /**
+     * Keeps the incremental checkpoints on top of the full one instead of a growing chain
+     */
+    @Setup(Level.Invocation)
+    public void rollBackToFullCheckpoint() {
+        virtualMachine.restore(snapshot);
+    }
+
+    @Benchmark
+    public LC3Snapshot incrementalCheckpoint() {
+        virtualMachine.writeProgram(0x4000, WORD);
+        return virtualMachine.incrementalCheckpoint();
+    }
+
+    @Benchmark
+    public short rollback() {
+        virtualMachine.writeProgram(0x4000, WORD);
+        virtualMachine.restore(snapshot);
+        return virtualMachine.getRegisterValue(LC3Register.R0);
+    }
+
+    @Benchmark
+    public long stateHash() {
+        virtualMachine.writeProgram(0x4000, WORD);
+        return virtualMachine.stateHash();
+    }
+}
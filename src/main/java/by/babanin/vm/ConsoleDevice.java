@@ -0,0 +1,68 @@
+package by.babanin.vm;
+
+/**
+ * Keyboard and screen of a machine. Keys are bytes taken one at a time, characters are written as their low byte.
+ * The listeners let a console that fills and drains its buffers on its own tell the machine about it; consoles
+ * without such buffers can ignore them.
+ */
+public interface ConsoleDevice {
+
+    int NO_KEY = -1;
+    int END_OF_INPUT = -2;
+
+    boolean isKeyReady();
+
+    /**
+     * @return next key or {@link #NO_KEY} without waiting
+     */
+    int pollKey();
+
+    /**
+     * Waits until a key is typed
+     *
+     * @return the key or {@link #END_OF_INPUT} once the input has ended and every key has been taken
+     */
+    int takeKey();
+
+    /**
+     * Waits until a key is ready without taking it
+     *
+     * @return {@code false} once the input has ended and every key has been taken
+     */
+    boolean awaitKey();
+
+    /**
+     * Writes the low byte of the character
+     */
+    void write(int character);
+
+    default void write(String text) {
+        for(int i = 0; i < text.length(); i++) {
+            write(text.charAt(i));
+        }
+    }
+
+    /**
+     * Shows everything written so far
+     */
+    void flush();
+
+    /**
+     * @param keyListener called, possibly on another thread, whenever new keys become ready
+     */
+    default void setKeyListener(Runnable keyListener) {
+    }
+
+    /**
+     * @param outputListener called whenever written characters start waiting for a flush, the machine then calls
+     *                       {@link #flushIfDue()} every now and then
+     */
+    default void setOutputListener(Runnable outputListener) {
+    }
+
+    /**
+     * Flushes the waiting characters once they have waited long enough, or asks to be called again
+     */
+    default void flushIfDue() {
+    }
+}
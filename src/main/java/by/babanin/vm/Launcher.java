@@ -1,63 +1,111 @@
 package by.babanin.vm;
 
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import by.babanin.vm.exception.VirtualMachineException;
 import by.babanin.vm.factory.VirtualMachineFactory;
+import by.babanin.vm.instrumentation.InstrumentedMemory;
+import by.babanin.vm.instrumentation.MemoryAccess;
+import by.babanin.vm.lc3.LC3ConsoleInput;
+import by.babanin.vm.lc3.LC3Memory;
+import by.babanin.vm.lc3.LC3SystemConsole;
+import by.babanin.vm.trace.ExecutionTracer;
 
+/**
+ * Usage: {@code Launcher [--raw] [--heat-map <file>] [--watch <address>]... <program.obj> [trace file]}.
+ * <ul>
+ *     <li>With a trace file every executed instruction is recorded there, see {@link by.babanin.vm.trace.TraceDecoder}.</li>
+ *     <li>{@code --heat-map} writes the reads and writes per page of memory when the program halts, as JSON when the
+ *     file name ends with {@code .json} and as CSV otherwise.</li>
+ *     <li>{@code --watch} reports every write to the hexadecimal address on the standard error stream.</li>
+ *     <li>{@code --raw} passes every keystroke to the program right away and without echo, for programs such as games
+ *     that read the keyboard while they run.</li>
+ * </ul>
+ */
 public class Launcher {
 
     private static final Logger logger = LogManager.getLogger();
 
     public static void main(String[] args) {
         try {
-            Path path = Paths.get(args[0]);
-            byte[] programBytes = readFile(path);
-            short origin = getOrigin(programBytes);
-            String program = getProgram(programBytes);
+            Path heatMap = null;
+            List<Long> watchedAddresses = new ArrayList<>();
+            boolean rawMode = false;
+            int argument = 0;
+            while(argument < args.length && args[argument].startsWith("--")) {
+                String option = args[argument++];
+                if(option.equals("--raw")) {
+                    rawMode = true;
+                    continue;
+                }
+                if(argument >= args.length) {
+                    throw new VirtualMachineException(option + " needs a value");
+                }
+                String value = args[argument++];
+                switch(option) {
+                    case "--heat-map":
+                        heatMap = Paths.get(value);
+                        break;
+                    case "--watch":
+                        watchedAddresses.add(Long.parseLong(value.replaceFirst("^(0x|x)", ""), 16));
+                        break;
+                    default:
+                        throw new VirtualMachineException("Unknown option " + option);
+                }
+            }
+            Path path = Paths.get(args[argument]);
+            Path traceFile = argument + 1 < args.length ? Paths.get(args[argument + 1]) : null;
+
+            if(rawMode && !LC3ConsoleInput.enableRawMode()) {
+                logger.warn("The terminal does not support raw mode, keys arrive once a line is finished");
+            }
+
+            VirtualMachineMemory memory = new LC3Memory();
+            InstrumentedMemory instrumentedMemory = null;
+            if(heatMap != null || !watchedAddresses.isEmpty()) {
+                instrumentedMemory = new InstrumentedMemory(memory);
+                for(long address : watchedAddresses) {
+                    instrumentedMemory.watch(address, (watched, access, instruction) -> {
+                        if(access == MemoryAccess.WRITE) {
+                            System.err.printf("x%04X <- x%04X%n", watched, instruction & 0xFFFF);
+                        }
+                    });
+                }
+                memory = instrumentedMemory;
+            }
 
             VirtualMachineFactory virtualMachineFactory = new VirtualMachineFactory();
-            VirtualMachine virtualMachine = virtualMachineFactory.lc3VirtualMachine();
-            virtualMachine.writeProgram(origin, program);
-            virtualMachine.run();
+            LC3SystemConsole console = LC3SystemConsole.standardConsole();
+            try {
+                if(traceFile != null) {
+                    try(ExecutionTracer tracer = new ExecutionTracer(traceFile)) {
+                        run(virtualMachineFactory.lc3TracingVirtualMachine(tracer, memory, console), path);
+                    }
+                }
+                else {
+                    run(virtualMachineFactory.lc3VirtualMachine(memory, console), path);
+                }
+            }
+            finally {
+                console.flush();
+                if(heatMap != null) {
+                    instrumentedMemory.getHeatMap().write(heatMap);
+                }
+            }
         }
         catch(Throwable throwable) {
             logger.error("", throwable);
         }
     }
 
-    private static byte[] readFile(Path path) {
-        try (FileInputStream stream = new FileInputStream(path.toFile())){
-            return stream.readAllBytes();
-        }
-        catch(IOException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    private static short getOrigin(byte[] programBytes) {
-        short origin = (short) (programBytes[0] << 8);
-        origin += programBytes[1];
-        return origin;
-    }
-
-    private static String getProgram(byte[] programBytes) {
-        StringBuilder builder = new StringBuilder();
-        for(int i = 2; i < programBytes.length; i += 2) {
-            byte secondByte = programBytes[i];
-            byte firstByte = programBytes[i + 1];
-            builder.append(expand(secondByte));
-            builder.append(expand(firstByte));
-        }
-        return builder.toString();
-    }
-
-    private static String expand(byte value) {
-        return String.format("%8s", Integer.toBinaryString(value & 0xFF)).replace(' ', '0');
+    private static void run(VirtualMachine virtualMachine, Path path) {
+        virtualMachine.loadImage(path);
+        virtualMachine.run();
     }
 }
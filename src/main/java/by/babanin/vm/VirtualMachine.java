@@ -1,8 +1,22 @@
 package by.babanin.vm;
 
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
 public interface VirtualMachine {
 
     void run();
 
     void writeProgram(long address, String program);
+
+    /**
+     * Writes an object image into memory. The image is a sequence of big-endian words, the first of which is the
+     * address the remaining words are written from.
+     */
+    void loadImage(ByteBuffer image);
+
+    /**
+     * Writes an object file into memory, see {@link #loadImage(ByteBuffer)}
+     */
+    void loadImage(Path path);
 }
@@ -1,8 +1,79 @@
 package by.babanin.vm;
 
+/**
+ * Memory of instructions. The bulk operations work on blocks of instructions that follow each other, the n-th of
+ * them at {@code address + n * getAddressesPerInstruction()}, and check the whole block once. The default
+ * implementations go instruction by instruction.
+ */
 public interface VirtualMachineMemory {
 
     void writeInstruction(final long address, final long instruction);
 
     long readInstruction(final long address);
+
+    /**
+     * @return distance between the addresses of two neighbouring instructions
+     */
+    default int getAddressesPerInstruction() {
+        return 1;
+    }
+
+    default void readBlock(final long address, final long[] destination, final int offset, final int length) {
+        for(int i = 0; i < length; i++) {
+            destination[offset + i] = readInstruction(address + (long) i * getAddressesPerInstruction());
+        }
+    }
+
+    /**
+     * Reads the lowest 16 bits of every instruction
+     */
+    default void readBlock(final long address, final short[] destination, final int offset, final int length) {
+        for(int i = 0; i < length; i++) {
+            destination[offset + i] = (short) readInstruction(address + (long) i * getAddressesPerInstruction());
+        }
+    }
+
+    default void writeBlock(final long address, final long[] source, final int offset, final int length) {
+        for(int i = 0; i < length; i++) {
+            writeInstruction(address + (long) i * getAddressesPerInstruction(), source[offset + i]);
+        }
+    }
+
+    /**
+     * Writes every word as an unsigned instruction
+     */
+    default void writeBlock(final long address, final short[] source, final int offset, final int length) {
+        for(int i = 0; i < length; i++) {
+            writeInstruction(address + (long) i * getAddressesPerInstruction(), source[offset + i] & 0xFFFF);
+        }
+    }
+
+    default void fill(final long address, final int length, final long instruction) {
+        for(int i = 0; i < length; i++) {
+            writeInstruction(address + (long) i * getAddressesPerInstruction(), instruction);
+        }
+    }
+
+    /**
+     * Copies a block of instructions, the source and the destination may overlap
+     */
+    default void copy(final long sourceAddress, final long destinationAddress, final int length) {
+        long step = getAddressesPerInstruction();
+        if(destinationAddress <= sourceAddress) {
+            for(int i = 0; i < length; i++) {
+                writeInstruction(destinationAddress + i * step, readInstruction(sourceAddress + i * step));
+            }
+        }
+        else {
+            for(int i = length - 1; i >= 0; i--) {
+                writeInstruction(destinationAddress + i * step, readInstruction(sourceAddress + i * step));
+            }
+        }
+    }
+
+    /**
+     * Makes the written instructions durable where the memory is backed by storage. The machine calls it when it halts.
+     */
+    default void flush() {
+    }
 }
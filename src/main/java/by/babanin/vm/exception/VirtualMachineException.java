@@ -5,4 +5,8 @@ public class VirtualMachineException extends RuntimeException {
     public VirtualMachineException(String message) {
         super(message);
     }
+
+    public VirtualMachineException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
@@ -1,11 +1,78 @@
 package by.babanin.vm.factory;
 
+import java.nio.file.Path;
+
+import by.babanin.vm.ConsoleDevice;
 import by.babanin.vm.VirtualMachine;
+import by.babanin.vm.VirtualMachineMemory;
+import by.babanin.vm.lc3.LC3CompilingVirtualMachine;
+import by.babanin.vm.lc3.LC3MappedMemory;
+import by.babanin.vm.lc3.LC3Memory;
+import by.babanin.vm.lc3.LC3SwitchVirtualMachine;
+import by.babanin.vm.lc3.LC3TracingVirtualMachine;
 import by.babanin.vm.lc3.LC3VirtualMachine;
+import by.babanin.vm.trace.ExecutionTracer;
 
 public class VirtualMachineFactory {
 
     public VirtualMachine lc3VirtualMachine() {
         return new LC3VirtualMachine();
     }
+
+    /**
+     * Machine over the given memory, for example a {@link by.babanin.vm.lc3.LC3PagedMemory#fork() fork} of a loaded
+     * paged memory shared with other machines
+     */
+    public VirtualMachine lc3VirtualMachine(VirtualMachineMemory memory) {
+        return new LC3VirtualMachine(memory);
+    }
+
+    /**
+     * Machine whose keyboard and display are the console, for example a
+     * {@link by.babanin.vm.lc3.LC3InMemoryConsole} for runs without a terminal
+     */
+    public VirtualMachine lc3VirtualMachine(ConsoleDevice console) {
+        return new LC3VirtualMachine(new LC3Memory(), console);
+    }
+
+    public VirtualMachine lc3VirtualMachine(VirtualMachineMemory memory, ConsoleDevice console) {
+        return new LC3VirtualMachine(memory, console);
+    }
+
+    /**
+     * Machine whose memory is the file, so it starts with the memory a previous machine over the file halted with
+     */
+    public VirtualMachine lc3VirtualMachine(Path memoryFile) {
+        return new LC3VirtualMachine(new LC3MappedMemory(memoryFile, true));
+    }
+
+    public VirtualMachine lc3SwitchVirtualMachine() {
+        return new LC3SwitchVirtualMachine();
+    }
+
+    public VirtualMachine lc3SwitchVirtualMachine(ConsoleDevice console) {
+        return new LC3SwitchVirtualMachine(new LC3Memory(), console);
+    }
+
+    public VirtualMachine lc3CompilingVirtualMachine() {
+        return new LC3CompilingVirtualMachine();
+    }
+
+    public VirtualMachine lc3CompilingVirtualMachine(ConsoleDevice console) {
+        return new LC3CompilingVirtualMachine(new LC3Memory(), console,
+                LC3CompilingVirtualMachine.DEFAULT_COMPILE_THRESHOLD);
+    }
+
+    public VirtualMachine lc3TracingVirtualMachine(ExecutionTracer tracer) {
+        return new LC3TracingVirtualMachine(tracer);
+    }
+
+    public VirtualMachine lc3TracingVirtualMachine(ExecutionTracer tracer, VirtualMachineMemory memory) {
+        return new LC3TracingVirtualMachine(tracer, memory);
+    }
+
+    public VirtualMachine lc3TracingVirtualMachine(ExecutionTracer tracer, VirtualMachineMemory memory,
+            ConsoleDevice console) {
+        return new LC3TracingVirtualMachine(tracer, memory, console);
+    }
 }
@@ -0,0 +1,117 @@
+package by.babanin.vm.instrumentation;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import by.babanin.vm.VirtualMachineMemory;
+
+/**
+ * Counts the reads and writes of every page of the wrapped memory and calls the watchpoints of watched addresses.
+ * A page is 256 instructions, so on the bit addressed packed memories it spans 256 times the instruction size.
+ * Only pages holding a watched address look the watchpoints up.
+ * Block operations go instruction by instruction, so every instruction of a block is counted and watched. Machines
+ * whose memory is not wrapped never reach this code.
+ * An LC-3 machine over this memory fetches every instruction from it: it neither caches nor fuses decoded instructions
+ * and does not compile blocks. Snapshots, restores and state hashes go to the wrapped memory: they are not counted
+ * and do not call the watchpoints.
+ */
+public class InstrumentedMemory implements VirtualMachineMemory {
+
+    private static final int PAGE_INSTRUCTIONS = 256;
+
+    private final VirtualMachineMemory memory;
+    private final int pageSize;
+    private final Map<Long, MemoryWatchpoint> watchpoints = new HashMap<>();
+    private final BitSet watchedPages = new BitSet();
+    private long[] reads = new long[0];
+    private long[] writes = new long[0];
+
+    public InstrumentedMemory(VirtualMachineMemory memory) {
+        this.memory = memory;
+        pageSize = PAGE_INSTRUCTIONS * memory.getAddressesPerInstruction();
+    }
+
+    /**
+     * @return memory whose accesses are counted
+     */
+    public VirtualMachineMemory getMemory() {
+        return memory;
+    }
+
+    /**
+     * Calls the watchpoint after every read and write of the address, replacing the previous watchpoint of it
+     */
+    public void watch(long address, MemoryWatchpoint watchpoint) {
+        watchpoints.put(address, watchpoint);
+        watchedPages.set(page(address));
+    }
+
+    public void unwatch(long address) {
+        watchpoints.remove(address);
+        if(watchpoints.keySet().stream().noneMatch(watched -> page(watched) == page(address))) {
+            watchedPages.clear(page(address));
+        }
+    }
+
+    /**
+     * @return copy of the counters collected so far
+     */
+    public MemoryHeatMap getHeatMap() {
+        int pages = Math.max(reads.length, writes.length);
+        return new MemoryHeatMap(pageSize, Arrays.copyOf(reads, pages), Arrays.copyOf(writes, pages));
+    }
+
+    @Override
+    public long readInstruction(long address) {
+        long instruction = memory.readInstruction(address);
+        int page = page(address);
+        if(page >= reads.length) {
+            reads = grow(reads, page);
+        }
+        reads[page]++;
+        if(watchedPages.get(page)) {
+            notifyWatchpoint(address, MemoryAccess.READ, instruction);
+        }
+        return instruction;
+    }
+
+    @Override
+    public void writeInstruction(long address, long instruction) {
+        memory.writeInstruction(address, instruction);
+        int page = page(address);
+        if(page >= writes.length) {
+            writes = grow(writes, page);
+        }
+        writes[page]++;
+        if(watchedPages.get(page)) {
+            notifyWatchpoint(address, MemoryAccess.WRITE, instruction);
+        }
+    }
+
+    @Override
+    public int getAddressesPerInstruction() {
+        return memory.getAddressesPerInstruction();
+    }
+
+    @Override
+    public void flush() {
+        memory.flush();
+    }
+
+    private void notifyWatchpoint(long address, MemoryAccess access, long instruction) {
+        MemoryWatchpoint watchpoint = watchpoints.get(address);
+        if(watchpoint != null) {
+            watchpoint.hit(address, access, instruction);
+        }
+    }
+
+    private int page(long address) {
+        return (int) (address / pageSize);
+    }
+
+    private static long[] grow(long[] counters, int page) {
+        return Arrays.copyOf(counters, Math.max(page + 1, counters.length * 2));
+    }
+}
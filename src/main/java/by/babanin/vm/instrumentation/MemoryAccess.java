@@ -0,0 +1,6 @@
+package by.babanin.vm.instrumentation;
+
+public enum MemoryAccess {
+    READ,
+    WRITE,
+}
@@ -0,0 +1,95 @@
+package by.babanin.vm.instrumentation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import by.babanin.vm.exception.VirtualMachineException;
+
+/**
+ * Reads and writes per page collected by {@link InstrumentedMemory}. Pages that were never accessed are left out of
+ * the exports.
+ */
+public class MemoryHeatMap {
+
+    private final int pageSize;
+    private final long[] reads;
+    private final long[] writes;
+
+    MemoryHeatMap(int pageSize, long[] reads, long[] writes) {
+        this.pageSize = pageSize;
+        this.reads = reads;
+        this.writes = writes;
+    }
+
+    /**
+     * @return amount of addresses in a page
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public long getReads(int page) {
+        return page < reads.length ? reads[page] : 0;
+    }
+
+    public long getWrites(int page) {
+        return page < writes.length ? writes[page] : 0;
+    }
+
+    /**
+     * Writes the map as JSON when the file name ends with {@code .json} and as CSV otherwise
+     */
+    public void write(Path file) {
+        try(Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if(file.getFileName().toString().endsWith(".json")) {
+                writeJson(writer);
+            }
+            else {
+                writeCsv(writer);
+            }
+        }
+        catch(IOException e) {
+            throw new VirtualMachineException("Heat map " + file + " can't be written", e);
+        }
+    }
+
+    /**
+     * <pre>
+     * address,reads,writes
+     * 0x3000,1200,35
+     * </pre>
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        writer.write("address,reads,writes\n");
+        for(int page = 0; page < reads.length; page++) {
+            if(reads[page] != 0 || writes[page] != 0) {
+                writer.write(address(page) + "," + reads[page] + "," + writes[page] + "\n");
+            }
+        }
+    }
+
+    /**
+     * <pre>
+     * {"pageSize":256,"pages":[{"address":"0x3000","reads":1200,"writes":35}]}
+     * </pre>
+     */
+    public void writeJson(Writer writer) throws IOException {
+        writer.write("{\"pageSize\":" + pageSize + ",\"pages\":[");
+        String separator = "";
+        for(int page = 0; page < reads.length; page++) {
+            if(reads[page] != 0 || writes[page] != 0) {
+                writer.write(separator + "{\"address\":\"" + address(page) + "\",\"reads\":" + reads[page]
+                        + ",\"writes\":" + writes[page] + "}");
+                separator = ",";
+            }
+        }
+        writer.write("]}\n");
+    }
+
+    private String address(int page) {
+        return "0x" + Long.toHexString((long) page * pageSize);
+    }
+}
@@ -0,0 +1,10 @@
+package by.babanin.vm.instrumentation;
+
+/**
+ * Callback of a watched address. Throwing from it stops the machine with the exception.
+ */
+@FunctionalInterface
+public interface MemoryWatchpoint {
+
+    void hit(long address, MemoryAccess access, long instruction);
+}
@@ -0,0 +1,441 @@
+package by.babanin.vm.lc3;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import by.babanin.vm.VirtualMachineMemory;
+import by.babanin.vm.exception.VirtualMachineException;
+
+/**
+ * Translates a basic block of LC-3 code into a class extending {@link LC3CompiledBlock}.
+ * General purpose registers are copied into JVM locals on entry and written back on exit, the condition flag is
+ * computed only where a branch or an exit needs it, and addresses relative to the program counter become constants.
+ * A branch back to the first instruction of the block loops inside the generated method until the machine has to
+ * look at its interrupts.
+ * Classes are defined in this package so they can use the package-private parts of the machine.
+ */
+final class LC3BlockCompiler {
+
+    static final int MAX_BLOCK_LENGTH = 64;
+    private static final byte INSTRUCTION_SIZE = 16;
+    private static final int MAX_ADDRESS = 1 << 16;
+
+    private static final String BLOCK = Type.getInternalName(LC3CompiledBlock.class);
+    private static final String MACHINE = Type.getInternalName(LC3VirtualMachine.class);
+    private static final String COMPILING_MACHINE = Type.getInternalName(LC3CompilingVirtualMachine.class);
+    private static final String MEMORY = Type.getInternalName(VirtualMachineMemory.class);
+    private static final String INTERRUPT_CONTROLLER = Type.getInternalName(LC3InterruptController.class);
+    private static final String EXECUTE_DESCRIPTOR = "(L" + COMPILING_MACHINE + ";[S)I";
+
+    private static final int THIS = 0;
+    private static final int MACHINE_ARGUMENT = 1;
+    private static final int REGISTERS_ARGUMENT = 2;
+    private static final int FIRST_REGISTER = 3;
+    private static final int CONDITION = 11;
+    private static final int FLAG_VALUE = 12;
+    private static final int LOOP_COUNT = 13;
+    private static final int LOOP_BUDGET = 15;
+    /* a loop looks at the interrupts at least this often, so requests from other threads are not kept waiting */
+    static final long MAX_LOOP_BUDGET = 1 << 16;
+
+    /* generated classes live in the application class loader, so their names are unique across machines */
+    private static final AtomicInteger compiledBlocks = new AtomicInteger();
+
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    /**
+     * A block ends before the first page the bus has devices on, their words are never compiled.
+     *
+     * @return compiled block starting at the address or {@code null} when the first instruction has to be interpreted
+     */
+    LC3CompiledBlock compile(LC3DeviceBus deviceBus, int startAddress) {
+        short[] instructions = new short[MAX_BLOCK_LENGTH];
+        int length = 0;
+        while(length < MAX_BLOCK_LENGTH && startAddress + length < MAX_ADDRESS
+                && !deviceBus.isDevicePage(startAddress + length)) {
+            short instruction = (short) deviceBus.readInstruction(startAddress + length);
+            LC3OperationCode operationCode = LC3OperationCode.valueOf(instruction, INSTRUCTION_SIZE);
+            if(operationCode == LC3OperationCode.TRAP || operationCode == LC3OperationCode.RTI || operationCode == LC3OperationCode.RES) {
+                break;
+            }
+            instructions[length++] = instruction;
+            if(operationCode == LC3OperationCode.BR || operationCode == LC3OperationCode.JMP || operationCode == LC3OperationCode.JSR) {
+                break;
+            }
+        }
+        if(length == 0) {
+            return null;
+        }
+
+        String className = BLOCK + "$x" + Integer.toHexString(startAddress) + "$" + compiledBlocks.getAndIncrement();
+        try {
+            Class<?> blockClass = lookup.defineClass(generate(className, startAddress, instructions, length));
+            return (LC3CompiledBlock) blockClass.getDeclaredConstructor(int.class, int.class).newInstance(startAddress, length);
+        }
+        catch(ReflectiveOperationException e) {
+            throw new VirtualMachineException("Block at " + Integer.toHexString(startAddress) + " cannot be compiled", e);
+        }
+    }
+
+    private byte[] generate(String className, int startAddress, short[] instructions, int length) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(Opcodes.V11, Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, className, null, BLOCK, null);
+
+        MethodVisitor constructor = classWriter.visitMethod(0, "<init>", "(II)V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, THIS);
+        constructor.visitVarInsn(Opcodes.ILOAD, 1);
+        constructor.visitVarInsn(Opcodes.ILOAD, 2);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, BLOCK, "<init>", "(II)V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        MethodVisitor method = classWriter.visitMethod(0, "execute", EXECUTE_DESCRIPTOR, null, null);
+        method.visitCode();
+        new BlockWriter(method, startAddress, instructions, length).write();
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * Emits the body of {@link LC3CompiledBlock#execute}, tracking at compile time whether the condition flag
+     * has to be derived from {@link #FLAG_VALUE}
+     */
+    private static final class BlockWriter {
+
+        private final MethodVisitor method;
+        private final int startAddress;
+        private final short[] instructions;
+        private final int length;
+        private final boolean[] written = new boolean[8];
+        private final Label loopStart = new Label();
+        private boolean flagSet;
+
+        private BlockWriter(MethodVisitor method, int startAddress, short[] instructions, int length) {
+            this.method = method;
+            this.startAddress = startAddress;
+            this.instructions = instructions;
+            this.length = length;
+        }
+
+        private void write() {
+            /* exits write back every register the block writes, since a loop may have run the whole block before */
+            for(int i = 0; i < length; i++) {
+                int instruction = instructions[i];
+                switch(LC3OperationCode.valueOf((short) instruction, INSTRUCTION_SIZE)) {
+                    case ADD:
+                    case AND:
+                    case NOT:
+                    case LEA:
+                    case LD:
+                    case LDI:
+                    case LDR:
+                        written[(instruction >>> 9) & 0x7] = true;
+                        break;
+                    case JSR:
+                        written[7] = true;
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            for(int i = 0; i < written.length; i++) {
+                method.visitVarInsn(Opcodes.ALOAD, REGISTERS_ARGUMENT);
+                pushInt(i);
+                method.visitInsn(Opcodes.SALOAD);
+                method.visitVarInsn(Opcodes.ISTORE, FIRST_REGISTER + i);
+            }
+            method.visitVarInsn(Opcodes.ALOAD, REGISTERS_ARGUMENT);
+            pushInt(LC3VirtualMachine.R_COND);
+            method.visitInsn(Opcodes.SALOAD);
+            method.visitVarInsn(Opcodes.ISTORE, CONDITION);
+            pushInt(0);
+            method.visitVarInsn(Opcodes.ISTORE, FLAG_VALUE);
+            method.visitInsn(Opcodes.LCONST_0);
+            method.visitVarInsn(Opcodes.LSTORE, LOOP_COUNT);
+            method.visitVarInsn(Opcodes.ALOAD, MACHINE_ARGUMENT);
+            method.visitFieldInsn(Opcodes.GETFIELD, MACHINE, "interrupts", "L" + INTERRUPT_CONTROLLER + ";");
+            method.visitFieldInsn(Opcodes.GETFIELD, INTERRUPT_CONTROLLER, "checkpoint", "J");
+            method.visitVarInsn(Opcodes.ALOAD, MACHINE_ARGUMENT);
+            method.visitFieldInsn(Opcodes.GETFIELD, MACHINE, "instructionCount", "J");
+            method.visitInsn(Opcodes.LSUB);
+            method.visitLdcInsn(MAX_LOOP_BUDGET);
+            method.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Math", "min", "(JJ)J", false);
+            method.visitVarInsn(Opcodes.LSTORE, LOOP_BUDGET);
+            method.visitLabel(loopStart);
+
+            for(int i = 0; i < length; i++) {
+                writeInstruction(i);
+            }
+            if(!isControlTransfer(instructions[length - 1])) {
+                pushInt((startAddress + length) & 0xFFFF);
+                writeExit(length);
+            }
+        }
+
+        private void writeInstruction(int index) {
+            int instruction = instructions[index];
+            /* program counter as the interpreter sees it while executing this instruction */
+            int pc = (short) (startAddress + index + 1);
+            int executed = index + 1;
+            int register = (instruction >>> 9) & 0x7;
+            int baseRegister = (instruction >>> 6) & 0x7;
+            int pcOffset9 = (instruction << 23) >> 23;
+            switch(LC3OperationCode.valueOf((short) instruction, INSTRUCTION_SIZE)) {
+                case ADD:
+                case AND:
+                    method.visitVarInsn(Opcodes.ILOAD, FIRST_REGISTER + baseRegister);
+                    if((instruction & 0x20) != 0) {
+                        pushInt((instruction << 27) >> 27);
+                    }
+                    else {
+                        method.visitVarInsn(Opcodes.ILOAD, FIRST_REGISTER + (instruction & 0x7));
+                    }
+                    method.visitInsn((instruction >>> 12 & 0xF) == LC3OperationCode.ADD.getCode() ? Opcodes.IADD : Opcodes.IAND);
+                    storeResult(register);
+                    break;
+                case NOT:
+                    method.visitVarInsn(Opcodes.ILOAD, FIRST_REGISTER + baseRegister);
+                    pushInt(-1);
+                    method.visitInsn(Opcodes.IXOR);
+                    storeResult(register);
+                    break;
+                case LEA:
+                    pushInt(pc + pcOffset9);
+                    storeResult(register);
+                    break;
+                case LD:
+                    pushMemory();
+                    method.visitLdcInsn((long) ((pc + pcOffset9) & 0xFFFF));
+                    readMemory();
+                    method.visitInsn(Opcodes.L2I);
+                    storeResult(register);
+                    break;
+                case LDI:
+                    pushMemory();
+                    pushMemory();
+                    method.visitLdcInsn((long) ((pc + pcOffset9) & 0xFFFF));
+                    readMemory();
+                    method.visitLdcInsn(0xFFFFL);
+                    method.visitInsn(Opcodes.LAND);
+                    readMemory();
+                    method.visitInsn(Opcodes.L2I);
+                    storeResult(register);
+                    break;
+                case LDR:
+                    pushMemory();
+                    method.visitVarInsn(Opcodes.ILOAD, FIRST_REGISTER + baseRegister);
+                    pushInt((instruction << 26) >> 26);
+                    method.visitInsn(Opcodes.IADD);
+                    pushAddressMask();
+                    method.visitInsn(Opcodes.I2L);
+                    readMemory();
+                    method.visitInsn(Opcodes.L2I);
+                    storeResult(register);
+                    break;
+                case ST:
+                    method.visitVarInsn(Opcodes.ALOAD, MACHINE_ARGUMENT);
+                    method.visitLdcInsn((long) ((pc + pcOffset9) & 0xFFFF));
+                    writeMemory(register, pc, executed);
+                    break;
+                case STI:
+                    method.visitVarInsn(Opcodes.ALOAD, MACHINE_ARGUMENT);
+                    pushMemory();
+                    method.visitLdcInsn((long) ((pc + pcOffset9) & 0xFFFF));
+                    readMemory();
+                    method.visitLdcInsn(0xFFFFL);
+                    method.visitInsn(Opcodes.LAND);
+                    writeMemory(register, pc, executed);
+                    break;
+                case STR:
+                    method.visitVarInsn(Opcodes.ALOAD, MACHINE_ARGUMENT);
+                    method.visitVarInsn(Opcodes.ILOAD, FIRST_REGISTER + baseRegister);
+                    pushInt((instruction << 26) >> 26);
+                    method.visitInsn(Opcodes.IADD);
+                    pushAddressMask();
+                    method.visitInsn(Opcodes.I2L);
+                    writeMemory(register, pc, executed);
+                    break;
+                case BR:
+                    writeBranch(instruction, pc, pcOffset9, executed);
+                    break;
+                case JMP:
+                    method.visitVarInsn(Opcodes.ILOAD, FIRST_REGISTER + baseRegister);
+                    writeExit(executed);
+                    break;
+                case JSR:
+                    pushInt(pc);
+                    method.visitVarInsn(Opcodes.ISTORE, FIRST_REGISTER + 7);
+                    if((instruction & 0x800) != 0) {
+                        pushInt(pc + ((instruction << 21) >> 21));
+                    }
+                    else {
+                        method.visitVarInsn(Opcodes.ILOAD, FIRST_REGISTER + baseRegister);
+                    }
+                    writeExit(executed);
+                    break;
+                default:
+                    throw new VirtualMachineException(Integer.toHexString(instruction & 0xFFFF) + " cannot be compiled");
+            }
+        }
+
+        private void writeBranch(int instruction, int pc, int pcOffset, int executed) {
+            int conditionMask = (instruction >>> 9) & 0x7;
+            Label notTaken = new Label();
+            if(conditionMask != 0) {
+                pushCondition();
+                pushInt(conditionMask);
+                method.visitInsn(Opcodes.IAND);
+                method.visitJumpInsn(Opcodes.IFEQ, notTaken);
+            }
+            if(((pc + pcOffset) & 0xFFFF) == startAddress) {
+                writeLoop(executed);
+            }
+            else {
+                pushInt(pc + pcOffset);
+                writeExit(executed);
+            }
+            if(conditionMask == 0) {
+                return;
+            }
+            method.visitLabel(notTaken);
+            pushInt(pc);
+            writeExit(executed);
+        }
+
+        /**
+         * Jumps back to the first instruction, carrying the condition flag over in {@link #CONDITION}, until the loop
+         * has used up the instructions {@link #LOOP_BUDGET} allows before the machine looks at its interrupts
+         */
+        private void writeLoop(int executed) {
+            pushCondition();
+            method.visitVarInsn(Opcodes.ISTORE, CONDITION);
+            method.visitVarInsn(Opcodes.LLOAD, LOOP_COUNT);
+            method.visitLdcInsn((long) executed);
+            method.visitInsn(Opcodes.LADD);
+            method.visitVarInsn(Opcodes.LSTORE, LOOP_COUNT);
+
+            method.visitVarInsn(Opcodes.LLOAD, LOOP_COUNT);
+            method.visitVarInsn(Opcodes.LLOAD, LOOP_BUDGET);
+            method.visitInsn(Opcodes.LCMP);
+            method.visitJumpInsn(Opcodes.IFLT, loopStart);
+            pushInt(startAddress);
+            writeExit(0);
+        }
+
+        /**
+         * Writes the register through the machine and leaves the block if the store hit compiled code
+         */
+        private void writeMemory(int register, int pc, int executed) {
+            method.visitVarInsn(Opcodes.ILOAD, FIRST_REGISTER + register);
+            method.visitInsn(Opcodes.I2L);
+            method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, COMPILING_MACHINE, "writeMemory", "(JJ)V", false);
+            Label valid = new Label();
+            method.visitVarInsn(Opcodes.ALOAD, THIS);
+            method.visitFieldInsn(Opcodes.GETFIELD, BLOCK, "invalidated", "Z");
+            method.visitJumpInsn(Opcodes.IFEQ, valid);
+            pushInt(pc);
+            writeExit(executed);
+            method.visitLabel(valid);
+        }
+
+        /**
+         * Expects the next program counter on the stack
+         */
+        private void writeExit(int executed) {
+            for(int i = 0; i < written.length; i++) {
+                if(written[i]) {
+                    method.visitVarInsn(Opcodes.ALOAD, REGISTERS_ARGUMENT);
+                    pushInt(i);
+                    method.visitVarInsn(Opcodes.ILOAD, FIRST_REGISTER + i);
+                    method.visitInsn(Opcodes.I2S);
+                    method.visitInsn(Opcodes.SASTORE);
+                }
+            }
+            method.visitVarInsn(Opcodes.ALOAD, REGISTERS_ARGUMENT);
+            pushInt(LC3VirtualMachine.R_COND);
+            pushCondition();
+            method.visitInsn(Opcodes.I2S);
+            method.visitInsn(Opcodes.SASTORE);
+
+            method.visitVarInsn(Opcodes.ALOAD, MACHINE_ARGUMENT);
+            method.visitInsn(Opcodes.DUP);
+            method.visitFieldInsn(Opcodes.GETFIELD, MACHINE, "instructionCount", "J");
+            method.visitVarInsn(Opcodes.LLOAD, LOOP_COUNT);
+            method.visitInsn(Opcodes.LADD);
+            method.visitLdcInsn((long) executed);
+            method.visitInsn(Opcodes.LADD);
+            method.visitFieldInsn(Opcodes.PUTFIELD, MACHINE, "instructionCount", "J");
+
+            pushInt(0xFFFF);
+            method.visitInsn(Opcodes.IAND);
+            method.visitInsn(Opcodes.IRETURN);
+        }
+
+        private void storeResult(int register) {
+            method.visitInsn(Opcodes.I2S);
+            method.visitInsn(Opcodes.DUP);
+            method.visitVarInsn(Opcodes.ISTORE, FLAG_VALUE);
+            method.visitVarInsn(Opcodes.ISTORE, FIRST_REGISTER + register);
+            flagSet = true;
+        }
+
+        private void pushCondition() {
+            if(flagSet) {
+                method.visitVarInsn(Opcodes.ILOAD, FLAG_VALUE);
+                method.visitMethodInsn(Opcodes.INVOKESTATIC, BLOCK, "flag", "(I)I", false);
+            }
+            else {
+                method.visitVarInsn(Opcodes.ILOAD, CONDITION);
+            }
+        }
+
+        /**
+         * Keeps the low 16 bits of the address on the stack, a register plus an offset may leave the address range
+         */
+        private void pushAddressMask() {
+            pushInt(0xFFFF);
+            method.visitInsn(Opcodes.IAND);
+        }
+
+        private void pushMemory() {
+            method.visitVarInsn(Opcodes.ALOAD, MACHINE_ARGUMENT);
+            method.visitFieldInsn(Opcodes.GETFIELD, MACHINE, "memory", "L" + MEMORY + ";");
+        }
+
+        private void readMemory() {
+            method.visitMethodInsn(Opcodes.INVOKEINTERFACE, MEMORY, "readInstruction", "(J)J", true);
+        }
+
+        private void pushInt(int value) {
+            if(value >= -1 && value <= 5) {
+                method.visitInsn(Opcodes.ICONST_0 + value);
+            }
+            else if(value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                method.visitIntInsn(Opcodes.BIPUSH, value);
+            }
+            else if(value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                method.visitIntInsn(Opcodes.SIPUSH, value);
+            }
+            else {
+                method.visitLdcInsn(value);
+            }
+        }
+
+        private static boolean isControlTransfer(short instruction) {
+            LC3OperationCode operationCode = LC3OperationCode.valueOf(instruction, INSTRUCTION_SIZE);
+            return operationCode == LC3OperationCode.BR || operationCode == LC3OperationCode.JMP || operationCode == LC3OperationCode.JSR;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package by.babanin.vm.lc3;
+
+/**
+ * Basic block translated into JVM bytecode by {@link LC3BlockCompiler}.
+ * The block covers the words {@code [startAddress, startAddress + length)} and ends with the branch, jump or
+ * subroutine call that leaves it, or right before a TRAP, RTI or RES, which stay with the interpreter.
+ */
+abstract class LC3CompiledBlock {
+
+    final int startAddress;
+    final int length;
+
+    /**
+     * Set when one of the covered words is overwritten. A running block checks it after each of its stores
+     * and returns to the interpreter right away.
+     */
+    boolean invalidated;
+
+    LC3CompiledBlock(int startAddress, int length) {
+        this.startAddress = startAddress;
+        this.length = length;
+    }
+
+    boolean covers(int address) {
+        return address >= startAddress && address < startAddress + length;
+    }
+
+    /**
+     * Runs the block and adds the executed instructions to the instruction count of the machine
+     *
+     * @return address of the next instruction
+     */
+    abstract int execute(LC3CompilingVirtualMachine virtualMachine, short[] registers);
+
+    static int flag(int value) {
+        if(value == 0) {
+            return LC3ConditionFlag.FL_ZRO.getFlagCode();
+        }
+        return value < 0 ? LC3ConditionFlag.FL_NEG.getFlagCode() : LC3ConditionFlag.FL_POS.getFlagCode();
+    }
+}
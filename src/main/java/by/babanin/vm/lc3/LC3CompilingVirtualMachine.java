@@ -0,0 +1,132 @@
+package by.babanin.vm.lc3;
+
+import java.util.Arrays;
+
+import by.babanin.vm.ConsoleDevice;
+import by.babanin.vm.VirtualMachineMemory;
+
+/**
+ * Interpreter with a compiling tier.
+ * Every address control arrives at after a branch, jump, subroutine call or trap starts a basic block. Once a block
+ * has been entered {@code compileThreshold} times, {@link LC3BlockCompiler} turns it into JVM bytecode and later
+ * entries run the compiled block instead of interpreting it. A write into a compiled block discards it, and the
+ * block is interpreted again until it becomes hot once more.
+ * Over an {@link by.babanin.vm.instrumentation.InstrumentedMemory} nothing is compiled, compiled blocks never fetch
+ * their instructions.
+ */
+public class LC3CompilingVirtualMachine extends LC3VirtualMachine {
+
+    public static final int DEFAULT_COMPILE_THRESHOLD = 100;
+    private static final int MAX_ADDRESS = 1 << 16;
+    private static final int NOT_COMPILABLE = -1;
+
+    private final LC3BlockCompiler compiler = new LC3BlockCompiler();
+    private final LC3CompiledBlock[] blocks = new LC3CompiledBlock[MAX_ADDRESS];
+    /* amount of compiled blocks covering every address, so that ordinary data writes are a single array load */
+    private final byte[] coverage = new byte[MAX_ADDRESS];
+    private final int[] entries = new int[MAX_ADDRESS];
+    private final int compileThreshold;
+    private int compiledBlockCount;
+
+    public LC3CompilingVirtualMachine() {
+        this(DEFAULT_COMPILE_THRESHOLD);
+    }
+
+    public LC3CompilingVirtualMachine(int compileThreshold) {
+        this(new LC3Memory(), new LC3SystemConsole(), compileThreshold);
+    }
+
+    public LC3CompilingVirtualMachine(VirtualMachineMemory memory, ConsoleDevice console, int compileThreshold) {
+        super(memory, console);
+        this.compileThreshold = compileThreshold;
+    }
+
+    @Override
+    public void resume() {
+        running = true;
+        boolean blockEntry = true;
+        while(running) {
+            if(instructionCount >= interrupts.checkpoint) {
+                checkInterrupts();
+                blockEntry = true;
+            }
+            if(blockEntry && !instrumented) {
+                int address = registers[R_PC] & 0xFFFF;
+                LC3CompiledBlock block = blocks[address];
+                if(block == null && entries[address] != NOT_COMPILABLE && ++entries[address] >= compileThreshold) {
+                    block = compile(address);
+                }
+                if(block != null) {
+                    conditionCode();
+                    registers[R_PC] = (short) block.execute(this, registers);
+                    continue;
+                }
+            }
+            LC3OperationCode operationCode = step();
+            blockEntry = operationCode == LC3OperationCode.BR || operationCode == LC3OperationCode.JMP
+                    || operationCode == LC3OperationCode.JSR || operationCode == LC3OperationCode.TRAP
+                    || operationCode == LC3OperationCode.RTI;
+        }
+    }
+
+    /**
+     * @return amount of blocks compiled since the machine was created, including discarded ones
+     */
+    public int getCompiledBlockCount() {
+        return compiledBlockCount;
+    }
+
+    @Override
+    void memoryWritten(long address) {
+        super.memoryWritten(address);
+        int index = (int) (address & 0xFFFF);
+        if(coverage[index] != 0) {
+            invalidate(index);
+        }
+        if(entries[index] == NOT_COMPILABLE) {
+            entries[index] = 0;
+        }
+    }
+
+    @Override
+    void memoryRestored() {
+        super.memoryRestored();
+        for(LC3CompiledBlock block : blocks) {
+            if(block != null) {
+                block.invalidated = true;
+            }
+        }
+        Arrays.fill(blocks, null);
+        Arrays.fill(coverage, (byte) 0);
+        Arrays.fill(entries, 0);
+    }
+
+    private LC3CompiledBlock compile(int address) {
+        LC3CompiledBlock block = compiler.compile(getDeviceBus(), address);
+        if(block == null) {
+            entries[address] = NOT_COMPILABLE;
+            return null;
+        }
+        blocks[address] = block;
+        for(int i = address; i < address + block.length; i++) {
+            coverage[i]++;
+        }
+        compiledBlockCount++;
+        return block;
+    }
+
+    private void invalidate(int address) {
+        int from = Math.max(0, address - LC3BlockCompiler.MAX_BLOCK_LENGTH + 1);
+        for(int start = from; start <= address; start++) {
+            LC3CompiledBlock block = blocks[start];
+            if(block != null && block.covers(address)) {
+                block.invalidated = true;
+                blocks[start] = null;
+                entries[start] = 0;
+                for(int i = start; i < start + block.length; i++) {
+                    coverage[i]--;
+                }
+            }
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package by.babanin.vm.lc3;
 
-import java.util.Arrays;
-
 import by.babanin.vm.ConditionFlag;
 import by.babanin.vm.exception.VirtualMachineException;
 
@@ -11,6 +9,15 @@ public enum LC3ConditionFlag implements ConditionFlag {
     FL_NEG((byte) (1 << 2)),
     ;
 
+    /* indexed by the flag code */
+    private static final LC3ConditionFlag[] FLAGS = new LC3ConditionFlag[maxFlagCode() + 1];
+
+    static {
+        for(LC3ConditionFlag flag : values()) {
+            FLAGS[flag.getFlagCode()] = flag;
+        }
+    }
+
     private final byte flagCode;
 
     LC3ConditionFlag(byte flagCode) {
@@ -35,9 +42,18 @@ public enum LC3ConditionFlag implements ConditionFlag {
     }
 
     public static LC3ConditionFlag valueOfFlag(short flag) {
-        return Arrays.stream(LC3ConditionFlag.values())
-                .filter(lc3ConditionFlag -> lc3ConditionFlag.getFlagCode() == flag)
-                .findFirst()
-                .orElseThrow(() -> new VirtualMachineException(Integer.toHexString(flag) + " flag code is not defined"));
+        LC3ConditionFlag conditionFlag = flag >= 0 && flag < FLAGS.length ? FLAGS[flag] : null;
+        if(conditionFlag == null) {
+            throw new VirtualMachineException(Integer.toHexString(flag) + " flag code is not defined");
+        }
+        return conditionFlag;
+    }
+
+    private static int maxFlagCode() {
+        int maxFlagCode = 0;
+        for(LC3ConditionFlag flag : values()) {
+            maxFlagCode = Math.max(maxFlagCode, flag.getFlagCode());
+        }
+        return maxFlagCode;
     }
 }
@@ -0,0 +1,180 @@
+package by.babanin.vm.lc3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import by.babanin.vm.ConsoleDevice;
+
+/**
+ * Keys typed on the console.
+ * A single daemon thread blocks on the input stream and feeds every byte into a {@link LC3KeyQueue}, so the machine
+ * only looks at the queue and never waits for the stream unless it asks to with {@link #take()}. The thread is
+ * started by the first look at the queue, so machines that never read the keyboard leave the stream alone.
+ */
+public class LC3ConsoleInput {
+
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int READ_BUFFER_SIZE = 256;
+    /* how long the reader waits for the machine to take keys from a full queue */
+    private static final long FULL_QUEUE_PAUSE = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final InputStream input;
+    private final LC3KeyQueue keys = new LC3KeyQueue(QUEUE_CAPACITY);
+    private volatile Runnable keyListener = () -> {
+    };
+    private volatile boolean started;
+    private volatile boolean ended;
+    /* machine thread parked in take() */
+    private volatile Thread waiter;
+
+    public LC3ConsoleInput(InputStream input) {
+        this.input = input;
+    }
+
+    /**
+     * Switches the terminal the program runs in to unbuffered input without echo, so every keystroke reaches the
+     * machine right away instead of once a line is finished. The previous settings are restored when the JVM exits.
+     *
+     * @return {@code false} when there is no terminal whose settings could be changed
+     */
+    public static boolean enableRawMode() {
+        try {
+            String settings = stty("-g").trim();
+            if(settings.isEmpty()) {
+                return false;
+            }
+            stty("-icanon -echo min 1");
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    stty(settings);
+                }
+                catch(IOException e) {
+                    // the terminal is gone
+                }
+            }));
+            return true;
+        }
+        catch(IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Called on the reader thread after new keys have been queued
+     */
+    void setKeyListener(Runnable keyListener) {
+        this.keyListener = keyListener;
+    }
+
+    /**
+     * @return whether a key is waiting to be taken
+     */
+    public boolean isReady() {
+        start();
+        return !keys.isEmpty();
+    }
+
+    /**
+     * @return next key or {@link ConsoleDevice#NO_KEY} without waiting
+     */
+    public int poll() {
+        start();
+        return keys.poll();
+    }
+
+    /**
+     * Waits until a key is typed
+     *
+     * @return the key or {@link ConsoleDevice#END_OF_INPUT} once the input has ended and every key has been taken
+     */
+    public int take() {
+        return await() ? keys.poll() : ConsoleDevice.END_OF_INPUT;
+    }
+
+    /**
+     * Waits until a key is typed without taking it
+     *
+     * @return {@code false} once the input has ended and every key has been taken
+     */
+    public boolean await() {
+        start();
+        while(true) {
+            if(!keys.isEmpty()) {
+                return true;
+            }
+            if(ended) {
+                /* the last keys may have been queued right before the end was set */
+                return !keys.isEmpty();
+            }
+            waiter = Thread.currentThread();
+            if(keys.isEmpty() && !ended) {
+                LockSupport.park(this);
+            }
+            waiter = null;
+        }
+    }
+
+    private void start() {
+        if(!started) {
+            synchronized(this) {
+                if(!started) {
+                    Thread reader = new Thread(this::read, "lc3-console-input");
+                    reader.setDaemon(true);
+                    reader.start();
+                    started = true;
+                }
+            }
+        }
+    }
+
+    private void read() {
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        try {
+            int length;
+            while((length = input.read(buffer)) >= 0) {
+                for(int i = 0; i < length; i++) {
+                    while(!keys.offer(buffer[i] & 0xFF)) {
+                        LockSupport.parkNanos(FULL_QUEUE_PAUSE);
+                    }
+                }
+                if(length > 0) {
+                    signal();
+                }
+            }
+        }
+        catch(IOException e) {
+            // treated as the end of the input
+        }
+        finally {
+            ended = true;
+            signal();
+        }
+    }
+
+    private void signal() {
+        keyListener.run();
+        Thread thread = waiter;
+        if(thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private static String stty(String arguments) throws IOException {
+        Process process = new ProcessBuilder("sh", "-c", "stty " + arguments + " < /dev/tty")
+                .redirectErrorStream(true)
+                .start();
+        try {
+            String output = new String(process.getInputStream().readAllBytes());
+            if(process.waitFor() != 0) {
+                throw new IOException(output);
+            }
+            return output;
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package by.babanin.vm.lc3;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+
+import by.babanin.vm.exception.VirtualMachineException;
+
+/**
+ * Characters the program prints, collected in a byte buffer.
+ * Every character is the low byte of a word and goes into the buffer as it is, so printing never allocates. The buffer
+ * is written out when it is full, when {@link #flush()} is called before the program waits for a key and when it
+ * halts, and once the oldest character in it has waited for the flush interval. The interval is checked by the
+ * machine every {@link #FLUSH_CHECK_INTERVAL} instructions while characters are buffered.
+ */
+public class LC3ConsoleOutput {
+
+    public static final int BUFFER_SIZE = 8192;
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(50);
+    public static final long FLUSH_CHECK_INTERVAL = 100_000;
+
+    private final OutputStream stream;
+    private final WritableByteChannel channel;
+    private final long flushInterval;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+    private int length;
+    /* System.nanoTime() of the oldest buffered character */
+    private long pendingSince;
+    private Runnable pendingListener = () -> {
+    };
+
+    public LC3ConsoleOutput(OutputStream stream) {
+        this(stream, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    public LC3ConsoleOutput(OutputStream stream, Duration flushInterval) {
+        this(stream, null, flushInterval);
+    }
+
+    /**
+     * Output written straight to the channel, without the copies and locks of a {@link java.io.PrintStream}
+     */
+    public LC3ConsoleOutput(WritableByteChannel channel, Duration flushInterval) {
+        this(null, channel, flushInterval);
+    }
+
+    private LC3ConsoleOutput(OutputStream stream, WritableByteChannel channel, Duration flushInterval) {
+        this.stream = stream;
+        this.channel = channel;
+        this.flushInterval = flushInterval.toNanos();
+    }
+
+    /**
+     * Output to the standard output of the process. When it is redirected, for example to a file or a pipe, the
+     * characters are written to its file channel; on a terminal they go through {@link System#out}.
+     */
+    public static LC3ConsoleOutput standardOutput() {
+        if(System.console() == null) {
+            return new LC3ConsoleOutput(new FileOutputStream(FileDescriptor.out).getChannel(), DEFAULT_FLUSH_INTERVAL);
+        }
+        return new LC3ConsoleOutput(System.out);
+    }
+
+    /**
+     * Called whenever a character goes into the empty buffer, so the machine can check the flush interval
+     */
+    void setPendingListener(Runnable pendingListener) {
+        this.pendingListener = pendingListener;
+    }
+
+    /**
+     * Buffers the low byte of the character
+     */
+    public void write(int character) {
+        if(length == buffer.length) {
+            flush();
+        }
+        if(length == 0) {
+            pendingSince = System.nanoTime();
+            pendingListener.run();
+        }
+        buffer[length++] = (byte) character;
+    }
+
+    public void write(String text) {
+        for(int i = 0; i < text.length(); i++) {
+            write(text.charAt(i));
+        }
+    }
+
+    public void flush() {
+        if(length == 0) {
+            return;
+        }
+        try {
+            if(channel != null) {
+                byteBuffer.clear();
+                byteBuffer.limit(length);
+                while(byteBuffer.hasRemaining()) {
+                    channel.write(byteBuffer);
+                }
+            }
+            else {
+                stream.write(buffer, 0, length);
+                stream.flush();
+            }
+        }
+        catch(IOException e) {
+            throw new VirtualMachineException("Console output failed", e);
+        }
+        finally {
+            length = 0;
+        }
+    }
+
+    /**
+     * Flushes the buffer once the flush interval has passed, or asks to be checked again
+     */
+    void flushIfDue() {
+        if(length == 0) {
+            return;
+        }
+        if(System.nanoTime() - pendingSince >= flushInterval) {
+            flush();
+        }
+        else {
+            pendingListener.run();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package by.babanin.vm.lc3;
+
+/**
+ * Instruction word split into its operands once, so that executing it again does not decode it again.
+ * Field meaning depends on the operation code:
+ * <ul>
+ *     <li>BR - {@code conditionMask} is nzp, {@code offset} is PCoffset9</li>
+ *     <li>ADD, AND - {@code register} is DR, {@code baseRegister} is SR1, {@code sourceRegister} is SR2
+ *     or {@code offset} is imm5 when {@code immediateMode} is set</li>
+ *     <li>NOT - {@code register} is DR, {@code baseRegister} is SR</li>
+ *     <li>LD, LDI, LEA, ST, STI - {@code register} is DR/SR, {@code offset} is PCoffset9</li>
+ *     <li>LDR, STR - {@code register} is DR/SR, {@code baseRegister} is BaseR, {@code offset} is offset6</li>
+ *     <li>JMP - {@code baseRegister} is BaseR</li>
+ *     <li>JSR - {@code offset} is PCoffset11 when {@code immediateMode} is set, otherwise {@code baseRegister} is BaseR</li>
+ *     <li>TRAP - {@code offset} is trapvect8</li>
+ * </ul>
+ * A fused entry additionally refers to the {@link LC3Superinstruction} it starts and to the decoded words after it.
+ */
+final class LC3DecodedInstruction {
+
+    private static final byte INSTRUCTION_SIZE = 16;
+
+    final LC3OperationCode operationCode;
+    final short instruction;
+    final int register;
+    final int baseRegister;
+    final int sourceRegister;
+    final int conditionMask;
+    final boolean immediateMode;
+    final short offset;
+    final LC3Superinstruction superinstruction;
+    final LC3DecodedInstruction second;
+    final LC3DecodedInstruction third;
+    /* operation code of the last instruction the entry executes */
+    final LC3OperationCode lastOperationCode;
+
+    private LC3DecodedInstruction(LC3OperationCode operationCode, short instruction, int register, int baseRegister,
+            int sourceRegister, int conditionMask, boolean immediateMode, short offset) {
+        this(operationCode, instruction, register, baseRegister, sourceRegister, conditionMask, immediateMode, offset,
+                null, null, null, operationCode);
+    }
+
+    private LC3DecodedInstruction(LC3OperationCode operationCode, short instruction, int register, int baseRegister,
+            int sourceRegister, int conditionMask, boolean immediateMode, short offset,
+            LC3Superinstruction superinstruction, LC3DecodedInstruction second, LC3DecodedInstruction third,
+            LC3OperationCode lastOperationCode) {
+        this.operationCode = operationCode;
+        this.instruction = instruction;
+        this.register = register;
+        this.baseRegister = baseRegister;
+        this.sourceRegister = sourceRegister;
+        this.conditionMask = conditionMask;
+        this.immediateMode = immediateMode;
+        this.offset = offset;
+        this.superinstruction = superinstruction;
+        this.second = second;
+        this.third = third;
+        this.lastOperationCode = lastOperationCode;
+    }
+
+    /**
+     * @return copy of this instruction that executes the whole superinstruction
+     */
+    LC3DecodedInstruction fuse(LC3Superinstruction superinstruction, LC3DecodedInstruction second, LC3DecodedInstruction third) {
+        LC3DecodedInstruction last = superinstruction.getLength() == 3 ? third : second;
+        return new LC3DecodedInstruction(operationCode, instruction, register, baseRegister, sourceRegister, conditionMask,
+                immediateMode, offset, superinstruction, second, superinstruction.getLength() == 3 ? third : null,
+                last.operationCode);
+    }
+
+    static LC3DecodedInstruction decode(short instruction) {
+        return decode(LC3OperationCode.valueOf(instruction, INSTRUCTION_SIZE), instruction);
+    }
+
+    static LC3DecodedInstruction decode(LC3OperationCode operationCode, short instruction) {
+        int register = (instruction >>> 9) & 0x7;
+        int baseRegister = (instruction >>> 6) & 0x7;
+        int sourceRegister = instruction & 0x7;
+        boolean immediateMode = false;
+        short offset = 0;
+        switch(operationCode) {
+            case ADD:
+            case AND:
+                immediateMode = ((instruction >>> 5) & 0x1) == 1;
+                offset = signExtend(instruction, 5);
+                break;
+            case BR:
+            case LD:
+            case LDI:
+            case LEA:
+            case ST:
+            case STI:
+                offset = signExtend(instruction, 9);
+                break;
+            case LDR:
+            case STR:
+                offset = signExtend(instruction, 6);
+                break;
+            case JSR:
+                immediateMode = ((instruction >>> 11) & 0x1) == 1;
+                offset = signExtend(instruction, 11);
+                break;
+            case TRAP:
+                offset = (short) (instruction & 0xFF);
+                break;
+            default:
+                break;
+        }
+        return new LC3DecodedInstruction(operationCode, instruction, register, baseRegister, sourceRegister, register,
+                immediateMode, offset);
+    }
+
+    private static short signExtend(short instruction, int size) {
+        return (short) ((instruction << (32 - size)) >> (32 - size));
+    }
+}
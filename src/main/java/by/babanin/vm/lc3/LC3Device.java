@@ -0,0 +1,12 @@
+package by.babanin.vm.lc3;
+
+/**
+ * Memory mapped device attached to the {@link LC3DeviceBus}. It only sees reads and writes of the addresses it was
+ * attached to.
+ */
+public interface LC3Device {
+
+    short read(int address);
+
+    void write(int address, short value);
+}
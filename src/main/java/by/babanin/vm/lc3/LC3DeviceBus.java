@@ -0,0 +1,135 @@
+package by.babanin.vm.lc3;
+
+import by.babanin.vm.VirtualMachineMemory;
+import by.babanin.vm.exception.VirtualMachineException;
+
+/**
+ * Memory of the machine as the program sees it: RAM with memory mapped devices on top.
+ * Devices are looked up in a table of 256 pages of 256 words. A page without devices is a single {@code null} check
+ * away from RAM, so attaching a device only costs the accesses to its own page. Words of a device page that no device
+ * claims are RAM as well.
+ * Block operations go to RAM directly, they are for loading and moving data and never reach a device.
+ */
+public class LC3DeviceBus implements VirtualMachineMemory {
+
+    private static final int MAX_ADDRESS = 1 << 16;
+    private static final int PAGE_SHIFT = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final VirtualMachineMemory memory;
+    private final LC3Device[][] pages = new LC3Device[MAX_ADDRESS >>> PAGE_SHIFT][];
+
+    public LC3DeviceBus(VirtualMachineMemory memory) {
+        this.memory = memory;
+    }
+
+    /**
+     * Maps the addresses {@code [firstAddress, lastAddress]} to the device
+     */
+    public void attach(int firstAddress, int lastAddress, LC3Device device) {
+        if(firstAddress < 0 || lastAddress >= MAX_ADDRESS || firstAddress > lastAddress) {
+            throw new VirtualMachineException("Invalid device range: [" + Integer.toHexString(firstAddress) + ","
+                    + Integer.toHexString(lastAddress) + "]");
+        }
+        for(int address = firstAddress; address <= lastAddress; address++) {
+            LC3Device[] page = pages[address >>> PAGE_SHIFT];
+            if(page == null) {
+                page = new LC3Device[PAGE_SIZE];
+                pages[address >>> PAGE_SHIFT] = page;
+            }
+            if(page[address & PAGE_MASK] != null) {
+                throw new VirtualMachineException("Address " + Integer.toHexString(address) + " already belongs to a device");
+            }
+            page[address & PAGE_MASK] = device;
+        }
+    }
+
+    /**
+     * @return whether a device is attached to any word of the page holding the address, words of such a page must not
+     * be read ahead or cached since a read could change the state of a device
+     */
+    public boolean isDevicePage(int address) {
+        return pages[(address & (MAX_ADDRESS - 1)) >>> PAGE_SHIFT] != null;
+    }
+
+    /**
+     * @return memory behind the devices
+     */
+    public VirtualMachineMemory getMemory() {
+        return memory;
+    }
+
+    @Override
+    public long readInstruction(long address) {
+        LC3Device[] page = page(address);
+        if(page != null) {
+            LC3Device device = page[(int) address & PAGE_MASK];
+            if(device != null) {
+                return device.read((int) address);
+            }
+        }
+        return memory.readInstruction(address);
+    }
+
+    @Override
+    public void writeInstruction(long address, long instruction) {
+        LC3Device[] page = page(address);
+        if(page != null) {
+            LC3Device device = page[(int) address & PAGE_MASK];
+            if(device != null) {
+                device.write((int) address, (short) instruction);
+                return;
+            }
+        }
+        memory.writeInstruction(address, instruction);
+    }
+
+    @Override
+    public int getAddressesPerInstruction() {
+        return memory.getAddressesPerInstruction();
+    }
+
+    @Override
+    public void readBlock(long address, long[] destination, int offset, int length) {
+        memory.readBlock(address, destination, offset, length);
+    }
+
+    @Override
+    public void readBlock(long address, short[] destination, int offset, int length) {
+        memory.readBlock(address, destination, offset, length);
+    }
+
+    @Override
+    public void writeBlock(long address, long[] source, int offset, int length) {
+        memory.writeBlock(address, source, offset, length);
+    }
+
+    @Override
+    public void writeBlock(long address, short[] source, int offset, int length) {
+        memory.writeBlock(address, source, offset, length);
+    }
+
+    @Override
+    public void fill(long address, int length, long instruction) {
+        memory.fill(address, length, instruction);
+    }
+
+    @Override
+    public void copy(long sourceAddress, long destinationAddress, int length) {
+        memory.copy(sourceAddress, destinationAddress, length);
+    }
+
+    @Override
+    public void flush() {
+        memory.flush();
+    }
+
+    /**
+     * @return devices of the page holding the address or {@code null} when it has none, addresses out of range are
+     * left to the memory to report
+     */
+    private LC3Device[] page(long address) {
+        return (address & ~(MAX_ADDRESS - 1L)) == 0 ? pages[(int) address >>> PAGE_SHIFT] : null;
+    }
+}
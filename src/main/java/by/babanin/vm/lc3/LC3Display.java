@@ -0,0 +1,42 @@
+package by.babanin.vm.lc3;
+
+import by.babanin.vm.ConsoleDevice;
+
+/**
+ * Display status and data registers. The display is always ready, a character written to DDR goes to the console.
+ */
+public class LC3Display implements LC3Device {
+
+    public static final int DSR = (int) (LC3MemoryRegister.DSR.getAddress() & 0xFFFF);
+    public static final int DDR = (int) (LC3MemoryRegister.DDR.getAddress() & 0xFFFF);
+    private static final short READY = (short) (1 << 15);
+
+    private final ConsoleDevice console;
+    private final Runnable outputListener;
+
+    public LC3Display(ConsoleDevice console) {
+        this(console, () -> {
+        });
+    }
+
+    /**
+     * @param outputListener called after every character written to DDR
+     */
+    public LC3Display(ConsoleDevice console, Runnable outputListener) {
+        this.console = console;
+        this.outputListener = outputListener;
+    }
+
+    @Override
+    public short read(int address) {
+        return address == DSR ? READY : 0;
+    }
+
+    @Override
+    public void write(int address, short value) {
+        if(address == DDR) {
+            console.write(value);
+            outputListener.run();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package by.babanin.vm.lc3;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import by.babanin.vm.ConsoleDevice;
+
+/**
+ * Console without a terminal for unattended runs and tests. All keys are scripted up front and ready right away, and
+ * the output is collected in a buffer that grows as needed. Once the script is used up, the input has ended.
+ */
+public class LC3InMemoryConsole implements ConsoleDevice {
+
+    private static final int INITIAL_OUTPUT_SIZE = 256;
+
+    private final byte[] input;
+    private int position;
+    private byte[] output = new byte[INITIAL_OUTPUT_SIZE];
+    private int length;
+
+    public LC3InMemoryConsole() {
+        this(new byte[0]);
+    }
+
+    public LC3InMemoryConsole(String input) {
+        this(input.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    public LC3InMemoryConsole(byte[] input) {
+        this.input = input.clone();
+    }
+
+    @Override
+    public boolean isKeyReady() {
+        return position < input.length;
+    }
+
+    @Override
+    public int pollKey() {
+        return position < input.length ? input[position++] & 0xFF : NO_KEY;
+    }
+
+    @Override
+    public int takeKey() {
+        return position < input.length ? input[position++] & 0xFF : END_OF_INPUT;
+    }
+
+    /**
+     * Every scripted key is ready from the start, so there is nothing to wait for
+     */
+    @Override
+    public boolean awaitKey() {
+        return isKeyReady();
+    }
+
+    @Override
+    public void write(int character) {
+        if(length == output.length) {
+            output = Arrays.copyOf(output, output.length * 2);
+        }
+        output[length++] = (byte) character;
+    }
+
+    @Override
+    public void flush() {
+        // nothing is held back
+    }
+
+    public byte[] getOutput() {
+        return Arrays.copyOf(output, length);
+    }
+
+    /**
+     * @return the output with every byte as one character
+     */
+    public String getOutputText() {
+        return new String(output, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    public void clearOutput() {
+        length = 0;
+    }
+}
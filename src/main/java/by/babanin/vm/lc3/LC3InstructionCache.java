@@ -0,0 +1,53 @@
+package by.babanin.vm.lc3;
+
+import java.util.Arrays;
+
+/**
+ * Decoded instructions indexed by their 16-bit address.
+ * An entry is dropped as soon as its address is written, so self-modifying programs see their new code.
+ * Entries up to {@link LC3Superinstruction#MAX_LENGTH} - 1 words before the written address are dropped as well,
+ * since they may hold a superinstruction covering it.
+ * Entries are kept in pages of 256 that are allocated when the first instruction of the page is decoded, so a machine
+ * only pays for the code it runs.
+ */
+final class LC3InstructionCache {
+
+    private static final int MAX_ADDRESS = 1 << 16;
+    private static final int PAGE_SHIFT = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    /* shared by all caches and never written */
+    private static final LC3DecodedInstruction[] EMPTY_PAGE = new LC3DecodedInstruction[PAGE_SIZE];
+
+    private final LC3DecodedInstruction[][] pages = new LC3DecodedInstruction[MAX_ADDRESS >>> PAGE_SHIFT][];
+
+    LC3InstructionCache() {
+        Arrays.fill(pages, EMPTY_PAGE);
+    }
+
+    LC3DecodedInstruction get(int address) {
+        return pages[(address & 0xFFFF) >>> PAGE_SHIFT][address & PAGE_MASK];
+    }
+
+    void put(int address, LC3DecodedInstruction decodedInstruction) {
+        int page = (address & 0xFFFF) >>> PAGE_SHIFT;
+        if(pages[page] == EMPTY_PAGE) {
+            pages[page] = new LC3DecodedInstruction[PAGE_SIZE];
+        }
+        pages[page][address & PAGE_MASK] = decodedInstruction;
+    }
+
+    void clear() {
+        Arrays.fill(pages, EMPTY_PAGE);
+    }
+
+    void invalidate(long address) {
+        for(int i = 0; i < LC3Superinstruction.MAX_LENGTH; i++) {
+            int entry = (int) ((address - i) & 0xFFFF);
+            LC3DecodedInstruction[] page = pages[entry >>> PAGE_SHIFT];
+            if(page != EMPTY_PAGE) {
+                page[entry & PAGE_MASK] = null;
+            }
+        }
+    }
+}
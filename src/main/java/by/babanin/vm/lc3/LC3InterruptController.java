@@ -0,0 +1,140 @@
+package by.babanin.vm.lc3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Interrupt requests of the devices and events scheduled in executed instructions.
+ * The machine compares its instruction count with {@link #checkpoint} before every dispatch and only calls
+ * {@link #nextVector(long, int)} once the count reaches it. Raising a request moves the checkpoint to 0 and
+ * scheduling an event moves it to the next instruction, so nothing else happens on the way of ordinary instructions.
+ * Requests may come from any thread; they stay raised until the device withdraws them, like the interrupt lines of the
+ * LC-3.
+ */
+public class LC3InterruptController {
+
+    public static final int MAX_PRIORITY = 7;
+    private static final int VECTOR_COUNT = 256;
+    private static final int NOT_REQUESTED = -1;
+
+    /* instruction count at which the machine looks at the requests and events next */
+    volatile long checkpoint = Long.MAX_VALUE;
+    private final int[] priorities = new int[VECTOR_COUNT];
+    private final List<ScheduledEvent> events = new ArrayList<>();
+
+    public LC3InterruptController() {
+        Arrays.fill(priorities, NOT_REQUESTED);
+    }
+
+    /**
+     * Raises the interrupt of the vector until it is {@link #withdraw(int) withdrawn}
+     *
+     * @param priority priority level 0-7, the interrupt is taken once the machine runs below it
+     */
+    public synchronized void request(int vector, int priority) {
+        priorities[vector] = priority;
+        checkpoint = 0;
+    }
+
+    public synchronized void withdraw(int vector) {
+        priorities[vector] = NOT_REQUESTED;
+    }
+
+    /**
+     * Runs the action once the machine has executed the given amount of instructions more
+     */
+    public synchronized void schedule(long instructions, Runnable action) {
+        events.add(new ScheduledEvent(instructions, action, false));
+        checkpoint = 0;
+    }
+
+    /**
+     * Like {@link #schedule(long, Runnable)} for events that only tidy up, such as flushing output. They do not keep
+     * the machine from waiting for input, see {@link #hasPendingEvents()}.
+     */
+    public synchronized void scheduleHousekeeping(long instructions, Runnable action) {
+        events.add(new ScheduledEvent(instructions, action, true));
+        checkpoint = 0;
+    }
+
+    /**
+     * @return whether an event other than housekeeping is scheduled, so that executing further instructions changes
+     * more than the instruction count
+     */
+    synchronized boolean hasPendingEvents() {
+        for(ScheduledEvent event : events) {
+            if(!event.housekeeping) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Makes the machine look at the raised requests again, after its priority has dropped
+     */
+    void recheck() {
+        checkpoint = 0;
+    }
+
+    /**
+     * Runs the events due at the instruction count
+     *
+     * @return vector of the raised interrupt with the highest priority above the given one or -1 when there is none
+     */
+    synchronized int nextVector(long instructionCount, int priority) {
+        for(ScheduledEvent event : events) {
+            event.start(instructionCount);
+        }
+        for(int i = 0; i < events.size(); ) {
+            ScheduledEvent event = events.get(i);
+            if(event.dueAt >= 0 && event.dueAt <= instructionCount) {
+                events.remove(i);
+                event.action.run();
+            }
+            else {
+                i++;
+            }
+        }
+        long next = Long.MAX_VALUE;
+        for(ScheduledEvent event : events) {
+            event.start(instructionCount);
+            next = Math.min(next, event.dueAt);
+        }
+        checkpoint = next;
+
+        int vector = -1;
+        for(int i = 0; i < VECTOR_COUNT; i++) {
+            if(priorities[i] > priority && (vector < 0 || priorities[i] > priorities[vector])) {
+                vector = i;
+            }
+        }
+        return vector;
+    }
+
+    synchronized int getPriority(int vector) {
+        return priorities[vector];
+    }
+
+    private static final class ScheduledEvent {
+
+        private final long delay;
+        private final Runnable action;
+        private final boolean housekeeping;
+        /* the delay counts from the first check after scheduling, when the instruction count is known */
+        private long dueAt = -1;
+
+        private ScheduledEvent(long delay, Runnable action, boolean housekeeping) {
+            this.delay = delay;
+            this.action = action;
+            this.housekeeping = housekeeping;
+        }
+
+        private void start(long instructionCount) {
+            if(dueAt < 0) {
+                dueAt = instructionCount + delay;
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package by.babanin.vm.lc3;
+
+import by.babanin.vm.ConsoleDevice;
+
+/**
+ * Bounded queue of key codes between one producing and one consuming thread.
+ * Each side only writes its own index, and the volatile write of the index publishes the slot, so neither side ever
+ * takes a lock.
+ */
+final class LC3KeyQueue {
+
+    static final int EMPTY = ConsoleDevice.NO_KEY;
+
+    private final int[] keys;
+    private final int mask;
+    /* index of the next key to take, written by the consumer only */
+    private volatile int head;
+    /* index of the next free slot, written by the producer only */
+    private volatile int tail;
+
+    /**
+     * @param capacity power of two
+     */
+    LC3KeyQueue(int capacity) {
+        if(Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity " + capacity + " is not a power of two");
+        }
+        keys = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return {@code false} when the queue is full
+     */
+    boolean offer(int key) {
+        int index = tail;
+        if(index - head == keys.length) {
+            return false;
+        }
+        keys[index & mask] = key;
+        tail = index + 1;
+        return true;
+    }
+
+    /**
+     * @return next key or {@link #EMPTY}
+     */
+    int poll() {
+        int index = head;
+        if(index == tail) {
+            return EMPTY;
+        }
+        int key = keys[index & mask];
+        head = index + 1;
+        return key;
+    }
+
+    boolean isEmpty() {
+        return head == tail;
+    }
+}
@@ -0,0 +1,167 @@
+package by.babanin.vm.lc3;
+
+import by.babanin.vm.ConsoleDevice;
+import by.babanin.vm.exception.VirtualMachineException;
+
+/**
+ * Keyboard status and data registers over the keys of a {@link ConsoleDevice}.
+ * The ready bit 15 of KBSR is set while a key is ready, and reading KBDR takes it. Neither register ever waits for
+ * the input. Whenever the program finds no key, the console output is flushed, so its prompt is shown while it waits.
+ * Setting bit 14 of KBSR enables the keyboard interrupt: it is raised by the console as soon as a key arrives and
+ * stays raised while keys are ready.
+ * <p>
+ * A program spinning on KBSR would keep a core busy while nobody types. The keyboard therefore counts the reads of
+ * KBSR that find no key over windows of {@link #IDLE_WINDOW} instructions. A window with at least one such read per
+ * {@link #MAX_POLL_LOOP_LENGTH} instructions and no output shows a polling loop, and the next read of KBSR parks the
+ * machine thread until a key arrives. The read then returns the ready bit, so the program goes on from where it
+ * stopped. The machine does not wait while events other than housekeeping are scheduled, such as a running timer,
+ * since the instructions it would skip would have delivered them. Like the timer, a compiled polling loop sees the end
+ * of a window up to one loop budget late.
+ */
+public class LC3Keyboard implements LC3Device {
+
+    public static final int KBSR = (int) (LC3MemoryRegister.KBSR.getAddress() & 0xFFFF);
+    public static final int KBDR = (int) (LC3MemoryRegister.KBDR.getAddress() & 0xFFFF);
+    public static final int VECTOR = 0x80;
+    public static final int PRIORITY = 4;
+    public static final long IDLE_WINDOW = 10_000;
+    public static final int MAX_POLL_LOOP_LENGTH = 8;
+    private static final int READY = 1 << 15;
+    private static final int INTERRUPT_ENABLED = 1 << 14;
+
+    private final ConsoleDevice console;
+    private final LC3InterruptController interrupts;
+    private volatile boolean interruptEnabled;
+    /* KBDR keeps the last key once no key is ready */
+    private short data;
+    /* reads of KBSR without a key in the current window */
+    private long emptyReads;
+    private boolean windowOpen;
+    private boolean outputWritten;
+    private boolean idle;
+
+    public LC3Keyboard(ConsoleDevice console) {
+        this(console, new LC3InterruptController());
+    }
+
+    public LC3Keyboard(ConsoleDevice console, LC3InterruptController interrupts) {
+        this.console = console;
+        this.interrupts = interrupts;
+        console.setKeyListener(this::keysQueued);
+    }
+
+    @Override
+    public short read(int address) {
+        if(address == KBSR) {
+            boolean ready = console.isKeyReady();
+            if(!ready) {
+                console.flush();
+                if(idle) {
+                    ready = awaitKey();
+                }
+                else {
+                    countEmptyRead();
+                }
+            }
+            return (short) ((ready ? READY : 0) | (interruptEnabled ? INTERRUPT_ENABLED : 0));
+        }
+        if(address == KBDR) {
+            int key = console.pollKey();
+            if(key != ConsoleDevice.NO_KEY) {
+                data = (short) key;
+                keyTaken();
+            }
+            return data;
+        }
+        return 0;
+    }
+
+    /**
+     * Only the interrupt enable bit of KBSR is writable
+     */
+    @Override
+    public void write(int address, short value) {
+        if(address == KBSR) {
+            interruptEnabled = (value & INTERRUPT_ENABLED) != 0;
+            if(!interruptEnabled) {
+                interrupts.withdraw(VECTOR);
+            }
+            else if(console.isKeyReady()) {
+                interrupts.request(VECTOR, PRIORITY);
+            }
+        }
+    }
+
+    /**
+     * Keeps the current window from counting as idle, since the program shows something while it polls
+     */
+    void outputWritten() {
+        outputWritten = true;
+    }
+
+    /**
+     * Waits until a key is typed and takes it, the way the GETC and IN service routines do
+     *
+     * @return the key or {@link ConsoleDevice#END_OF_INPUT}
+     */
+    public int take() {
+        if(!console.isKeyReady()) {
+            console.flush();
+        }
+        int key = console.takeKey();
+        if(key != ConsoleDevice.END_OF_INPUT) {
+            data = (short) key;
+            keyTaken();
+        }
+        return key;
+    }
+
+    private void countEmptyRead() {
+        emptyReads++;
+        if(!windowOpen) {
+            windowOpen = true;
+            interrupts.scheduleHousekeeping(IDLE_WINDOW, this::closeWindow);
+        }
+    }
+
+    private void closeWindow() {
+        windowOpen = false;
+        idle = !outputWritten && emptyReads >= IDLE_WINDOW / MAX_POLL_LOOP_LENGTH;
+        emptyReads = 0;
+        outputWritten = false;
+    }
+
+    /**
+     * @return whether a key is ready now
+     */
+    private boolean awaitKey() {
+        idle = false;
+        if(interrupts.hasPendingEvents()) {
+            return false;
+        }
+        if(!console.awaitKey()) {
+            throw new VirtualMachineException("Keyboard input has ended while the program waits for a key");
+        }
+        return true;
+    }
+
+    private void keysQueued() {
+        if(interruptEnabled) {
+            interrupts.request(VECTOR, PRIORITY);
+        }
+    }
+
+    /**
+     * The request is withdrawn before the queue is looked at, so a key queued in between raises it again
+     */
+    private void keyTaken() {
+        emptyReads = 0;
+        idle = false;
+        if(interruptEnabled) {
+            interrupts.withdraw(VECTOR);
+            if(console.isKeyReady()) {
+                interrupts.request(VECTOR, PRIORITY);
+            }
+        }
+    }
+}
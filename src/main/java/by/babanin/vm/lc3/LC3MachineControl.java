@@ -0,0 +1,33 @@
+package by.babanin.vm.lc3;
+
+/**
+ * Machine control register. Bit 15 enables the clock and reads as set while the machine runs, clearing it stops the
+ * machine the way the HALT routine of the LC-3 operating system does. Engines that run several instructions per
+ * dispatch, such as compiled blocks, stop at the end of the dispatch.
+ */
+public class LC3MachineControl implements LC3Device {
+
+    public static final int MCR = (int) (LC3MemoryRegister.MCR.getAddress() & 0xFFFF);
+    private static final int CLOCK_ENABLED = 1 << 15;
+
+    private final Runnable stop;
+
+    /**
+     * @param stop called when the clock is disabled
+     */
+    public LC3MachineControl(Runnable stop) {
+        this.stop = stop;
+    }
+
+    @Override
+    public short read(int address) {
+        return (short) CLOCK_ENABLED;
+    }
+
+    @Override
+    public void write(int address, short value) {
+        if((value & CLOCK_ENABLED) == 0) {
+            stop.run();
+        }
+    }
+}
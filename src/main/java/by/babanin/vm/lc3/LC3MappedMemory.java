@@ -0,0 +1,55 @@
+package by.babanin.vm.lc3;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import by.babanin.vm.exception.VirtualMachineException;
+
+/**
+ * LC-3 memory whose 65536 words are a file of big-endian words mapped into the address space.
+ * Writes go to the file, so a machine created over the same file later starts with the memory the previous one
+ * left, without loading and initialising it again. A missing or short file is extended with zero words.
+ */
+public class LC3MappedMemory extends LC3WordMemory {
+
+    private static final long FILE_SIZE = (long) MAX_ADDRESS * Short.BYTES;
+
+    private final MappedByteBuffer buffer;
+    private final boolean force;
+
+    /**
+     * @param force whether {@link #flush()} waits until the written words reach the storage device
+     */
+    public LC3MappedMemory(Path file, boolean force) {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        }
+        catch(IOException e) {
+            throw new VirtualMachineException(file + " can't be mapped", e);
+        }
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        this.force = force;
+    }
+
+    @Override
+    protected short load(int address) {
+        return buffer.getShort(address * Short.BYTES);
+    }
+
+    @Override
+    protected void store(int address, short value) {
+        buffer.putShort(address * Short.BYTES, value);
+    }
+
+    @Override
+    public void flush() {
+        if(force) {
+            buffer.force();
+        }
+    }
+}
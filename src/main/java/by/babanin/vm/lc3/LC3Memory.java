@@ -1,51 +1,42 @@
 package by.babanin.vm.lc3;
 
-import java.util.Scanner;
-
-import by.babanin.vm.VirtualMachineMemory;
-import by.babanin.vm.exception.VirtualMachineException;
+import java.util.Arrays;
 
 /**
  * Memory has 65536 cells. Each cell is 2 bytes or 16 bits.
  * Memory size is 131072 bytes or 128 KB.
  */
-public class LC3Memory implements VirtualMachineMemory {
+public class LC3Memory extends LC3WordMemory {
 
-    private static final int MAX_ADDRESS = 1 << 16;
     private final short[] memory = new short[MAX_ADDRESS];
 
     @Override
-    public void writeInstruction(long address, long instruction) {
-        validateAddress(address);
-        memory[(int) address] = (short) (instruction & 0xFFFF);
+    protected short load(int address) {
+        return memory[address];
     }
 
     @Override
-    public long readInstruction(long address) {
-        validateAddress(address);
-        int kbsrAddress = (int) (LC3MemoryRegister.KBSR.getAddress() & 0xFFFF);
-        int kbdrAddress = (int) (LC3MemoryRegister.KBDR.getAddress() & 0xFFFF);
-        if(kbsrAddress == address) {
-            short character = readKey();
-            memory[kbsrAddress] = (short) (1 << 15);
-            memory[kbdrAddress] = character;
-        }
-        return memory[(int) address];
+    protected void store(int address, short value) {
+        memory[address] = value;
     }
 
-    private short readKey() {
-        Scanner scanner = new Scanner(System.in);
-        String str = scanner.nextLine();
-        if(str.isEmpty()) {
-            return 0;
-        }
-        return (short) str.charAt(0);
+    @Override
+    protected void loadBlock(int address, short[] destination, int offset, int length) {
+        System.arraycopy(memory, address, destination, offset, length);
+    }
+
+    @Override
+    protected void storeBlock(int address, short[] source, int offset, int length) {
+        System.arraycopy(source, offset, memory, address, length);
     }
 
-    private void validateAddress(long address) {
-        if(address < 0 || address > MAX_ADDRESS) {
-            throw new VirtualMachineException(
-                    "Invalid address: " + Long.toHexString(address) + ". Memory range: [0," + Long.toHexString(MAX_ADDRESS) + "]");
-        }
+    @Override
+    protected void fillBlock(int address, int length, short value) {
+        Arrays.fill(memory, address, address + length, value);
+    }
+
+    @Override
+    protected void copyBlock(int sourceAddress, int destinationAddress, int length) {
+        System.arraycopy(memory, sourceAddress, memory, destinationAddress, length);
     }
 }
@@ -5,6 +5,11 @@ import by.babanin.vm.MemoryRegister;
 public enum LC3MemoryRegister implements MemoryRegister {
     KBSR((short) 0xFE00),
     KBDR((short) 0xFE02),
+    DSR((short) 0xFE04),
+    DDR((short) 0xFE06),
+    TMSR((short) 0xFE08),
+    TMIR((short) 0xFE0A),
+    MCR((short) 0xFFFE),
     ;
 
     private final short address;
@@ -1,8 +1,5 @@
 package by.babanin.vm.lc3;
 
-import java.util.Arrays;
-import java.util.function.BiConsumer;
-
 import by.babanin.vm.ByteOperationCode;
 import by.babanin.vm.exception.VirtualMachineException;
 
@@ -15,19 +12,27 @@ public enum LC3OperationCode implements ByteOperationCode {
     AND((byte) 0x05, LC3VirtualMachine::and),    /* bitwise and */
     LDR((byte) 0x06, LC3VirtualMachine::ldr),    /* load register */
     STR((byte) 0x07, LC3VirtualMachine::str),    /* store register */
-    RTI((byte) 0x08, LC3VirtualMachine::rti),    /* unused */
+    RTI((byte) 0x08, LC3VirtualMachine::rti),    /* return from interrupt */
     NOT((byte) 0x09, LC3VirtualMachine::not),    /* bitwise not */
     LDI((byte) 0x0A, LC3VirtualMachine::ldi),    /* load indirect */
     STI((byte) 0x0B, LC3VirtualMachine::sti),    /* store indirect */
     JMP((byte) 0x0C, LC3VirtualMachine::jmp),    /* jump */
-    RES((byte) 0x0D, LC3VirtualMachine::res),    /* reserved (unused) */
+    RES((byte) 0x0D, LC3VirtualMachine::res),    /* reserved, raises an illegal operation code exception */
     LEA((byte) 0x0E, LC3VirtualMachine::lea),    /* load effective address */
     TRAP((byte) 0x0F, LC3VirtualMachine::trap),   /* execute trap */;
 
+    private static final LC3OperationCode[] OPERATION_CODES = new LC3OperationCode[16];
+
+    static {
+        for(LC3OperationCode operationCode : values()) {
+            OPERATION_CODES[operationCode.getCode()] = operationCode;
+        }
+    }
+
     private final byte operationCode;
-    private final BiConsumer<LC3VirtualMachine, Short> executor;
+    private final Executor executor;
 
-    LC3OperationCode(byte operationCode, BiConsumer<LC3VirtualMachine, Short> executor) {
+    LC3OperationCode(byte operationCode, Executor executor) {
         this.operationCode = operationCode;
         this.executor = executor;
     }
@@ -39,13 +44,27 @@ public enum LC3OperationCode implements ByteOperationCode {
 
     public static LC3OperationCode valueOf(short instruction, byte instructionSize) {
         byte opCode = (byte) ((instruction >>> instructionSize - 4) & 0x0F);
-        return Arrays.stream(LC3OperationCode.values())
-                .filter(lc3OperationCode -> lc3OperationCode.getCode() == opCode)
-                .findFirst()
-                .orElseThrow(() -> new VirtualMachineException(Integer.toHexString(opCode) + " operation code is not defined"));
+        LC3OperationCode operationCode = OPERATION_CODES[opCode];
+        if(operationCode == null) {
+            throw new VirtualMachineException(Integer.toHexString(opCode) + " operation code is not defined");
+        }
+        return operationCode;
     }
 
     public void execute(LC3VirtualMachine virtualMachine, short instruction) {
-        executor.accept(virtualMachine, instruction);
+        executor.execute(virtualMachine, LC3DecodedInstruction.decode(this, instruction));
+    }
+
+    void execute(LC3VirtualMachine virtualMachine, LC3DecodedInstruction decodedInstruction) {
+        executor.execute(virtualMachine, decodedInstruction);
+    }
+
+    /**
+     * Takes an already decoded instruction so that neither dispatch nor the handler decodes the word again
+     */
+    @FunctionalInterface
+    interface Executor {
+
+        void execute(LC3VirtualMachine virtualMachine, LC3DecodedInstruction decodedInstruction);
     }
 }
@@ -0,0 +1,90 @@
+package by.babanin.vm.lc3;
+
+import java.util.Arrays;
+
+/**
+ * LC-3 memory of 256 pages of 256 words that machines share copy-on-write.
+ * {@link #fork()} copies only the page table: both memories keep reading the same pages, and whichever of them writes
+ * a shared page first gets its own copy. Pages nobody has written are a single shared page of zeros.
+ */
+public class LC3PagedMemory extends LC3WordMemory {
+
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final short[] ZERO_PAGE = new short[PAGE_SIZE];
+
+    private final short[][] pages;
+    /* pages this memory may write in place, every other page is shared */
+    private final boolean[] owned = new boolean[PAGE_COUNT];
+
+    public LC3PagedMemory() {
+        pages = new short[PAGE_COUNT][];
+        Arrays.fill(pages, ZERO_PAGE);
+    }
+
+    private LC3PagedMemory(short[][] pages) {
+        this.pages = pages;
+    }
+
+    /**
+     * @return memory with the same contents that shares all pages with this one until either of them writes
+     */
+    public LC3PagedMemory fork() {
+        Arrays.fill(owned, false);
+        return new LC3PagedMemory(pages.clone());
+    }
+
+    /**
+     * @return amount of pages written by this memory since it was created or last forked
+     */
+    public int getOwnedPageCount() {
+        int count = 0;
+        for(boolean page : owned) {
+            if(page) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    protected short load(int address) {
+        return pages[address >>> PAGE_SHIFT][address & PAGE_MASK];
+    }
+
+    @Override
+    protected void store(int address, short value) {
+        ownPage(address >>> PAGE_SHIFT)[address & PAGE_MASK] = value;
+    }
+
+    @Override
+    protected void loadBlock(int address, short[] destination, int offset, int length) {
+        while(length > 0) {
+            int pageOffset = address & PAGE_MASK;
+            int count = Math.min(length, PAGE_SIZE - pageOffset);
+            System.arraycopy(pages[address >>> PAGE_SHIFT], pageOffset, destination, offset, count);
+            address += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    protected void storeBlock(int address, short[] source, int offset, int length) {
+        while(length > 0) {
+            int pageOffset = address & PAGE_MASK;
+            int count = Math.min(length, PAGE_SIZE - pageOffset);
+            System.arraycopy(source, offset, ownPage(address >>> PAGE_SHIFT), pageOffset, count);
+            address += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    private short[] ownPage(int page) {
+        if(!owned[page]) {
+            pages[page] = pages[page].clone();
+            owned[page] = true;
+        }
+        return pages[page];
+    }
+}
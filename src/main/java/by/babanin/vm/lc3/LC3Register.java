@@ -1,7 +1,5 @@
 package by.babanin.vm.lc3;
 
-import java.util.Arrays;
-
 import by.babanin.vm.exception.VirtualMachineException;
 
 public enum LC3Register {
@@ -18,6 +16,14 @@ public enum LC3Register {
     R_COUNT((byte) 10),
     ;
 
+    private static final LC3Register[] REGISTERS = new LC3Register[values().length];
+
+    static {
+        for(LC3Register register : values()) {
+            REGISTERS[register.getValue()] = register;
+        }
+    }
+
     private final byte value;
 
     LC3Register(byte value) {
@@ -29,9 +35,9 @@ public enum LC3Register {
     }
 
     public static LC3Register valueOf(byte value) {
-        return Arrays.stream(LC3Register.values())
-                .filter(register -> register.getValue() == value)
-                .findFirst()
-                .orElseThrow(() -> new VirtualMachineException(Integer.toHexString(value) + " register is defined"));
+        if(value < 0 || value >= REGISTERS.length) {
+            throw new VirtualMachineException(Integer.toHexString(value) + " register is defined");
+        }
+        return REGISTERS[value];
     }
 }
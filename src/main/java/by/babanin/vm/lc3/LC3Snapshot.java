@@ -0,0 +1,128 @@
+package by.babanin.vm.lc3;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import by.babanin.vm.exception.VirtualMachineException;
+
+/**
+ * Registers and memory of an {@link LC3VirtualMachine} at a checkpoint.
+ * A full snapshot holds every page of 256 words that is not all zeros. An incremental one holds only the pages
+ * written since the previous snapshot and takes the rest from it.
+ * <p>
+ * Binary format, big-endian: magic {@code LC3S}, incremental flag byte, the 10 registers followed by the processor
+ * status and the saved supervisor and user stack pointers, amount of pages, and every
+ * page as its index byte followed by its 256 words. An incremental snapshot is read back on top of its previous one.
+ */
+public final class LC3Snapshot {
+
+    static final int PAGE_SIZE = LC3WordMemory.PAGE_SIZE;
+    static final int PAGE_COUNT = LC3WordMemory.PAGE_COUNT;
+    /* registers, processor status, saved supervisor stack pointer and saved user stack pointer */
+    static final int REGISTER_COUNT = LC3Register.R_COUNT.getValue() + 3;
+    private static final int MAGIC = 0x4C433353;
+
+    private final short[] registers;
+    private final short[][] pages;
+    private final LC3Snapshot previous;
+
+    LC3Snapshot(short[] registers, short[][] pages, LC3Snapshot previous) {
+        this.registers = registers;
+        this.pages = pages;
+        this.previous = previous;
+    }
+
+    public boolean isIncremental() {
+        return previous != null;
+    }
+
+    /**
+     * @return amount of pages held by this snapshot itself
+     */
+    public int getPageCount() {
+        int count = 0;
+        for(short[] page : pages) {
+            if(page != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    short[] getRegisters() {
+        return registers;
+    }
+
+    /**
+     * @return words of the page at the checkpoint or {@code null} when they are all zeros
+     */
+    short[] getPage(int page) {
+        for(LC3Snapshot snapshot = this; snapshot != null; snapshot = snapshot.previous) {
+            if(snapshot.pages[page] != null) {
+                return snapshot.pages[page];
+            }
+        }
+        return null;
+    }
+
+    public void write(OutputStream stream) {
+        try {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeBoolean(isIncremental());
+            for(short register : registers) {
+                out.writeShort(register);
+            }
+            out.writeShort(getPageCount());
+            for(int page = 0; page < PAGE_COUNT; page++) {
+                if(pages[page] != null) {
+                    out.writeByte(page);
+                    for(short word : pages[page]) {
+                        out.writeShort(word);
+                    }
+                }
+            }
+            out.flush();
+        }
+        catch(IOException e) {
+            throw new VirtualMachineException("Snapshot can't be written", e);
+        }
+    }
+
+    /**
+     * @param previous snapshot an incremental snapshot was taken after, ignored for full snapshots
+     */
+    public static LC3Snapshot read(InputStream stream, LC3Snapshot previous) {
+        try {
+            DataInputStream in = new DataInputStream(stream);
+            if(in.readInt() != MAGIC) {
+                throw new VirtualMachineException("Not a snapshot");
+            }
+            boolean incremental = in.readBoolean();
+            if(incremental && previous == null) {
+                throw new VirtualMachineException("Incremental snapshot needs the previous snapshot");
+            }
+            short[] registers = new short[REGISTER_COUNT];
+            for(int i = 0; i < registers.length; i++) {
+                registers[i] = in.readShort();
+            }
+            short[][] pages = new short[PAGE_COUNT][];
+            int pageCount = in.readUnsignedShort();
+            for(int i = 0; i < pageCount; i++) {
+                short[] page = new short[PAGE_SIZE];
+                int index = in.readUnsignedByte();
+                for(int j = 0; j < PAGE_SIZE; j++) {
+                    page[j] = in.readShort();
+                }
+                pages[index] = page;
+            }
+            return new LC3Snapshot(registers, pages, incremental ? previous : null);
+        }
+        catch(IOException e) {
+            throw new VirtualMachineException("Snapshot can't be read", e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package by.babanin.vm.lc3;
+
+/**
+ * Common sequences of LC-3 instructions that the interpreter dispatches once instead of once per instruction.
+ * Only the entry of the first word is fused, so a branch into the middle of a sequence still executes the
+ * remaining words one by one.
+ */
+public enum LC3Superinstruction {
+    ADD_BR(2, LC3VirtualMachine::addBr),                        /* ADD DR, SR1, #imm5; BR */
+    LOAD_IMMEDIATE(2, LC3VirtualMachine::loadImmediate),       /* AND DR, SR, #0; ADD DR, DR, #imm5 */
+    READ_MODIFY_WRITE(3, LC3VirtualMachine::readModifyWrite),  /* LDR DR, BaseR, #o; ADD DR, DR, X; STR DR, BaseR, #o */
+    ;
+
+    public static final int MAX_LENGTH = 3;
+
+    private final int length;
+    private final LC3OperationCode.Executor executor;
+
+    LC3Superinstruction(int length, LC3OperationCode.Executor executor) {
+        this.length = length;
+        this.executor = executor;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    void execute(LC3VirtualMachine virtualMachine, LC3DecodedInstruction decodedInstruction) {
+        executor.execute(virtualMachine, decodedInstruction);
+    }
+
+    /**
+     * @return superinstruction starting with these instructions or {@code null} when they do not form one
+     */
+    static LC3Superinstruction match(LC3DecodedInstruction first, LC3DecodedInstruction second, LC3DecodedInstruction third) {
+        if(first.operationCode == LC3OperationCode.ADD && first.immediateMode && second.operationCode == LC3OperationCode.BR) {
+            return ADD_BR;
+        }
+        if(first.operationCode == LC3OperationCode.AND && first.immediateMode && first.offset == 0
+                && second.operationCode == LC3OperationCode.ADD && second.immediateMode
+                && second.register == first.register && second.baseRegister == first.register) {
+            return LOAD_IMMEDIATE;
+        }
+        if(third != null && first.operationCode == LC3OperationCode.LDR && first.register != first.baseRegister
+                && second.operationCode == LC3OperationCode.ADD
+                && second.register == first.register && second.baseRegister == first.register
+                && third.operationCode == LC3OperationCode.STR && third.register == first.register
+                && third.baseRegister == first.baseRegister && third.offset == first.offset) {
+            return READ_MODIFY_WRITE;
+        }
+        return null;
+    }
+}
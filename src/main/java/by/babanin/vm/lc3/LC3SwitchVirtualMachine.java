@@ -0,0 +1,161 @@
+package by.babanin.vm.lc3;
+
+import by.babanin.vm.ConsoleDevice;
+import by.babanin.vm.VirtualMachineMemory;
+
+/**
+ * Interpreter that executes the whole program inside a single method.
+ * The instruction word is decoded with a {@code switch} over the operation code, and the program counter,
+ * condition flag and instruction count live in locals that are written back only around traps, interrupts and on
+ * exit. R0-R7 stay in the register file: an instruction picks them by a field of its word, which a JVM local cannot
+ * be indexed by. Devices must not rely on {@link #getInstructionCount()} while the program runs, it is only current
+ * at those write-backs.
+ * Results are identical to {@link LC3VirtualMachine}, which dispatches every instruction through
+ * {@link LC3OperationCode}.
+ */
+public class LC3SwitchVirtualMachine extends LC3VirtualMachine {
+
+    private static final byte INSTRUCTION_SIZE = 16;
+    private static final int FL_POS = LC3ConditionFlag.FL_POS.getFlagCode();
+    private static final int FL_ZRO = LC3ConditionFlag.FL_ZRO.getFlagCode();
+    private static final int FL_NEG = LC3ConditionFlag.FL_NEG.getFlagCode();
+
+    public LC3SwitchVirtualMachine() {
+    }
+
+    public LC3SwitchVirtualMachine(VirtualMachineMemory memory, ConsoleDevice console) {
+        super(memory, console);
+    }
+
+    @Override
+    public void resume() {
+        final short[] r = registers;
+        int pc = r[R_PC];
+        int cond = conditionCode();
+        long count = instructionCount;
+
+        running = true;
+        try {
+            while(running) {
+                if(count >= interrupts.checkpoint) {
+                    r[R_PC] = (short) pc;
+                    r[R_COND] = (short) cond;
+                    instructionCount = count;
+                    checkInterrupts();
+                    pc = r[R_PC];
+                    cond = r[R_COND];
+                }
+                int instruction = (int) memory.readInstruction(pc & 0xFFFF);
+                pc = (short) (pc + 1);
+                switch((instruction >>> 12) & 0xF) {
+                    case 0x0: { // BR
+                        int conditionMask = (instruction >>> 9) & 0x7;
+                        if(conditionMask == 0 || (conditionMask & cond) != 0) {
+                            pc = (short) (pc + ((instruction << 23) >> 23));
+                        }
+                        break;
+                    }
+                    case 0x1: { // ADD
+                        int dr = (instruction >>> 9) & 0x7;
+                        int value = (instruction & 0x20) != 0
+                                ? r[(instruction >>> 6) & 0x7] + ((instruction << 27) >> 27)
+                                : r[(instruction >>> 6) & 0x7] + r[instruction & 0x7];
+                        r[dr] = (short) value;
+                        cond = flag(r[dr]);
+                        break;
+                    }
+                    case 0x2: { // LD
+                        int dr = (instruction >>> 9) & 0x7;
+                        r[dr] = (short) memory.readInstruction((pc + ((instruction << 23) >> 23)) & 0xFFFF);
+                        cond = flag(r[dr]);
+                        break;
+                    }
+                    case 0x3: // ST
+                        writeMemory((pc + ((instruction << 23) >> 23)) & 0xFFFF, r[(instruction >>> 9) & 0x7]);
+                        break;
+                    case 0x4: // JSR
+                        r[R7] = (short) pc;
+                        pc = (instruction & 0x800) != 0
+                                ? (short) (pc + ((instruction << 21) >> 21))
+                                : r[(instruction >>> 6) & 0x7];
+                        break;
+                    case 0x5: { // AND
+                        int dr = (instruction >>> 9) & 0x7;
+                        int value = (instruction & 0x20) != 0
+                                ? r[(instruction >>> 6) & 0x7] & ((instruction << 27) >> 27)
+                                : r[(instruction >>> 6) & 0x7] & r[instruction & 0x7];
+                        r[dr] = (short) value;
+                        cond = flag(r[dr]);
+                        break;
+                    }
+                    case 0x6: { // LDR
+                        int dr = (instruction >>> 9) & 0x7;
+                        int address = (r[(instruction >>> 6) & 0x7] + ((instruction << 26) >> 26)) & 0xFFFF;
+                        r[dr] = (short) memory.readInstruction(address);
+                        cond = flag(r[dr]);
+                        break;
+                    }
+                    case 0x7: // STR
+                        writeMemory((r[(instruction >>> 6) & 0x7] + ((instruction << 26) >> 26)) & 0xFFFF,
+                                r[(instruction >>> 9) & 0x7]);
+                        break;
+                    case 0x9: { // NOT
+                        int dr = (instruction >>> 9) & 0x7;
+                        r[dr] = (short) ~r[(instruction >>> 6) & 0x7];
+                        cond = flag(r[dr]);
+                        break;
+                    }
+                    case 0xA: { // LDI
+                        int dr = (instruction >>> 9) & 0x7;
+                        long address = memory.readInstruction((pc + ((instruction << 23) >> 23)) & 0xFFFF) & 0xFFFF;
+                        r[dr] = (short) memory.readInstruction(address);
+                        cond = flag(r[dr]);
+                        break;
+                    }
+                    case 0xB: // STI
+                        writeMemory(memory.readInstruction((pc + ((instruction << 23) >> 23)) & 0xFFFF) & 0xFFFF,
+                                r[(instruction >>> 9) & 0x7]);
+                        break;
+                    case 0xC: // JMP
+                        pc = r[(instruction >>> 6) & 0x7];
+                        break;
+                    case 0xE: { // LEA
+                        int dr = (instruction >>> 9) & 0x7;
+                        r[dr] = (short) (pc + ((instruction << 23) >> 23));
+                        cond = flag(r[dr]);
+                        break;
+                    }
+                    case 0xF: // TRAP
+                        r[R_PC] = (short) pc;
+                        r[R_COND] = (short) cond;
+                        instructionCount = count;
+                        callServiceRoutine(instruction & 0xFF);
+                        pc = r[R_PC];
+                        cond = conditionCode();
+                        break;
+                    default: // RTI, RES
+                        r[R_PC] = (short) pc;
+                        r[R_COND] = (short) cond;
+                        instructionCount = count;
+                        LC3OperationCode.valueOf((short) instruction, INSTRUCTION_SIZE).execute(this, (short) instruction);
+                        pc = r[R_PC];
+                        cond = conditionCode();
+                        break;
+                }
+                count++;
+            }
+        }
+        finally {
+            r[R_PC] = (short) pc;
+            r[R_COND] = (short) cond;
+            instructionCount = count;
+        }
+    }
+
+    private static int flag(short value) {
+        if(value == 0) {
+            return FL_ZRO;
+        }
+        return value < 0 ? FL_NEG : FL_POS;
+    }
+}
@@ -0,0 +1,84 @@
+package by.babanin.vm.lc3;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import by.babanin.vm.ConsoleDevice;
+
+/**
+ * Console of the process: keys are read from a stream by a {@link LC3ConsoleInput} thread and characters are
+ * collected by a {@link LC3ConsoleOutput}.
+ */
+public class LC3SystemConsole implements ConsoleDevice {
+
+    private final LC3ConsoleInput input;
+    private final LC3ConsoleOutput output;
+
+    /**
+     * Console over {@link System#in} and {@link System#out}
+     */
+    public LC3SystemConsole() {
+        this(System.in, System.out);
+    }
+
+    public LC3SystemConsole(InputStream input, OutputStream output) {
+        this(new LC3ConsoleInput(input), new LC3ConsoleOutput(output));
+    }
+
+    public LC3SystemConsole(LC3ConsoleInput input, LC3ConsoleOutput output) {
+        this.input = input;
+        this.output = output;
+    }
+
+    /**
+     * Console over {@link System#in} and {@link LC3ConsoleOutput#standardOutput()}
+     */
+    public static LC3SystemConsole standardConsole() {
+        return new LC3SystemConsole(new LC3ConsoleInput(System.in), LC3ConsoleOutput.standardOutput());
+    }
+
+    @Override
+    public boolean isKeyReady() {
+        return input.isReady();
+    }
+
+    @Override
+    public int pollKey() {
+        return input.poll();
+    }
+
+    @Override
+    public int takeKey() {
+        return input.take();
+    }
+
+    @Override
+    public boolean awaitKey() {
+        return input.await();
+    }
+
+    @Override
+    public void write(int character) {
+        output.write(character);
+    }
+
+    @Override
+    public void flush() {
+        output.flush();
+    }
+
+    @Override
+    public void setKeyListener(Runnable keyListener) {
+        input.setKeyListener(keyListener);
+    }
+
+    @Override
+    public void setOutputListener(Runnable outputListener) {
+        output.setPendingListener(outputListener);
+    }
+
+    @Override
+    public void flushIfDue() {
+        output.flushIfDue();
+    }
+}
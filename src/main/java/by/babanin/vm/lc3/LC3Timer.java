@@ -0,0 +1,79 @@
+package by.babanin.vm.lc3;
+
+/**
+ * Periodic timer counting executed instructions instead of wall-clock time, so a program sees the same interrupts on
+ * every run.
+ * <ul>
+ *     <li>TMSR: bit 15 is set every time the interval elapses and cleared by reading the register, bit 14 enables the
+ *     interrupt.</li>
+ *     <li>TMIR: interval in instructions, writing it restarts the timer and 0 stops it.</li>
+ * </ul>
+ * The interrupt stays raised until TMSR is read. Engines that run several instructions per dispatch, such as fused
+ * superinstructions or compiled blocks, may deliver it a few instructions late.
+ */
+public class LC3Timer implements LC3Device {
+
+    public static final int TMSR = (int) (LC3MemoryRegister.TMSR.getAddress() & 0xFFFF);
+    public static final int TMIR = (int) (LC3MemoryRegister.TMIR.getAddress() & 0xFFFF);
+    public static final int VECTOR = 0x81;
+    public static final int PRIORITY = 6;
+    private static final int EXPIRED = 1 << 15;
+    private static final int INTERRUPT_ENABLED = 1 << 14;
+
+    private final LC3InterruptController interrupts;
+    private boolean expired;
+    private boolean interruptEnabled;
+    private short interval;
+    /* incremented on every restart, so events of the previous interval are ignored */
+    private int generation;
+
+    public LC3Timer(LC3InterruptController interrupts) {
+        this.interrupts = interrupts;
+    }
+
+    @Override
+    public short read(int address) {
+        if(address == TMSR) {
+            short status = (short) ((expired ? EXPIRED : 0) | (interruptEnabled ? INTERRUPT_ENABLED : 0));
+            expired = false;
+            interrupts.withdraw(VECTOR);
+            return status;
+        }
+        return address == TMIR ? interval : 0;
+    }
+
+    @Override
+    public void write(int address, short value) {
+        if(address == TMSR) {
+            interruptEnabled = (value & INTERRUPT_ENABLED) != 0;
+            if(expired && interruptEnabled) {
+                interrupts.request(VECTOR, PRIORITY);
+            }
+            else if(!interruptEnabled) {
+                interrupts.withdraw(VECTOR);
+            }
+        }
+        else if(address == TMIR) {
+            interval = value;
+            generation++;
+            if(interval != 0) {
+                schedule(generation);
+            }
+        }
+    }
+
+    private void schedule(int generation) {
+        interrupts.schedule(interval & 0xFFFF, () -> expire(generation));
+    }
+
+    private void expire(int generation) {
+        if(generation != this.generation) {
+            return;
+        }
+        expired = true;
+        if(interruptEnabled) {
+            interrupts.request(VECTOR, PRIORITY);
+        }
+        schedule(generation);
+    }
+}
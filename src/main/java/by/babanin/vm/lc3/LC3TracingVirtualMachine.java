@@ -0,0 +1,66 @@
+package by.babanin.vm.lc3;
+
+import by.babanin.vm.ConsoleDevice;
+import by.babanin.vm.VirtualMachineMemory;
+import by.babanin.vm.trace.ExecutionTracer;
+import by.babanin.vm.trace.TraceRecord;
+
+/**
+ * Interpreter that reports every executed instruction to an {@link ExecutionTracer}.
+ * It decodes each word on its own and never fuses superinstructions, so the trace holds one record per instruction.
+ * Machines created without tracing never reach this code.
+ */
+public class LC3TracingVirtualMachine extends LC3VirtualMachine {
+
+    private static final int GENERAL_REGISTER_COUNT = LC3Register.R_PC.getValue();
+    private static final int NO_WRITE = -1;
+
+    private final ExecutionTracer tracer;
+    private final short[] previousRegisters = new short[GENERAL_REGISTER_COUNT];
+    private int writeAddress = NO_WRITE;
+    private short writeValue;
+
+    public LC3TracingVirtualMachine(ExecutionTracer tracer) {
+        this(tracer, new LC3Memory());
+    }
+
+    public LC3TracingVirtualMachine(ExecutionTracer tracer, VirtualMachineMemory memory) {
+        super(memory);
+        this.tracer = tracer;
+    }
+
+    public LC3TracingVirtualMachine(ExecutionTracer tracer, VirtualMachineMemory memory, ConsoleDevice console) {
+        super(memory, console);
+        this.tracer = tracer;
+    }
+
+    @Override
+    LC3OperationCode step() {
+        short programCounter = getAndIncProgramCounter();
+        short instruction = (short) memory.readInstruction(programCounter & 0xFFFF);
+        LC3DecodedInstruction decodedInstruction = LC3DecodedInstruction.decode(instruction);
+        System.arraycopy(registers, 0, previousRegisters, 0, GENERAL_REGISTER_COUNT);
+        writeAddress = NO_WRITE;
+
+        decodedInstruction.operationCode.execute(this, decodedInstruction);
+        instructionCount++;
+
+        int changedRegister = TraceRecord.NO_REGISTER;
+        for(int i = 0; i < GENERAL_REGISTER_COUNT; i++) {
+            if(registers[i] != previousRegisters[i]) {
+                changedRegister = i;
+                break;
+            }
+        }
+        short registerValue = changedRegister == TraceRecord.NO_REGISTER ? 0 : registers[changedRegister];
+        tracer.trace(programCounter, instruction, changedRegister, registerValue, writeAddress, writeValue);
+        return decodedInstruction.operationCode;
+    }
+
+    @Override
+    void writeMemory(long address, long value) {
+        super.writeMemory(address, value);
+        writeAddress = (int) (address & 0xFFFF);
+        writeValue = (short) value;
+    }
+}
@@ -1,6 +1,5 @@
 package by.babanin.vm.lc3;
 
-import java.util.Arrays;
 import java.util.function.Consumer;
 
 import by.babanin.vm.TrapCode;
@@ -15,6 +14,14 @@ public enum LC3TrapCode implements TrapCode {
     HALT((byte) 0x25, LC3VirtualMachine::halt),  // halt the program
     ;
 
+    private static final LC3TrapCode[] TRAP_VECTOR = new LC3TrapCode[256];
+
+    static {
+        for(LC3TrapCode trapCode : values()) {
+            TRAP_VECTOR[trapCode.getValue() & 0xFF] = trapCode;
+        }
+    }
+
     private final byte trapCode;
     private final Consumer<LC3VirtualMachine> executor;
 
@@ -29,10 +36,11 @@ public enum LC3TrapCode implements TrapCode {
     }
 
     public static LC3TrapCode valueOf(byte value) {
-        return Arrays.stream(LC3TrapCode.values())
-                .filter(lc3TrapCode -> lc3TrapCode.getValue() == value)
-                .findFirst()
-                .orElseThrow(() -> new VirtualMachineException(Integer.toHexString(value) + " trap code isn't defined"));
+        LC3TrapCode trapCode = TRAP_VECTOR[value & 0xFF];
+        if(trapCode == null) {
+            throw new VirtualMachineException(Integer.toHexString(value) + " trap code isn't defined");
+        }
+        return trapCode;
     }
 
     public void execute(LC3VirtualMachine virtualMachine) {
@@ -0,0 +1,275 @@
+package by.babanin.vm.lc3;
+
+import java.util.Arrays;
+
+import by.babanin.vm.VirtualMachineMemory;
+
+/**
+ * Service routines of a loaded operating system image that the machine runs as Java code.
+ * The GETC, OUT and PUTS routines of the LC-3 reference operating system are recognised by their instructions and by
+ * the device registers their pointers hold, not by their addresses, so an image assembled anywhere in memory matches.
+ * Every word a recognition looked at, including the entry of the trap vector table, is watched. Writing any of them
+ * forgets all recognitions, so a changed vector or routine runs as guest code from then on.
+ */
+final class LC3TrapRoutines {
+
+    static final int TRAP_VECTOR_TABLE_SIZE = 0x100;
+    private static final int MAX_ADDRESS = 1 << 16;
+    private static final int OUT_VECTOR = LC3TrapCode.OUT.getValue();
+    private static final int RET = 0xC1C0;
+    private static final int BR_Z = 0b010;
+    private static final int BR_ZP = 0b011;
+    private static final int BR_NZP = 0b111;
+    private static final int NOT_RAM = -1;
+
+    private final VirtualMachineMemory memory;
+    private final LC3DeviceBus deviceBus;
+    private final Routine[] routines = new Routine[TRAP_VECTOR_TABLE_SIZE];
+    private final boolean[] recognised = new boolean[TRAP_VECTOR_TABLE_SIZE];
+    /* bitmap of the watched addresses */
+    private final long[] watched = new long[MAX_ADDRESS / Long.SIZE];
+    private boolean watching;
+
+    /**
+     * @param memory    memory the routines are read from
+     * @param deviceBus bus telling which pages hold devices
+     */
+    LC3TrapRoutines(VirtualMachineMemory memory, LC3DeviceBus deviceBus) {
+        this.memory = memory;
+        this.deviceBus = deviceBus;
+    }
+
+    /**
+     * @return routine the vector leads to when it is a standard one or {@code null}
+     */
+    Routine get(int vector) {
+        if(!recognised[vector]) {
+            routines[vector] = recognise(vector);
+            recognised[vector] = true;
+        }
+        return routines[vector];
+    }
+
+    void memoryWritten(long address) {
+        if(watching) {
+            int index = (int) (address & 0xFFFF);
+            if((watched[index >>> 6] & 1L << index) != 0) {
+                clear();
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(recognised, false);
+        Arrays.fill(routines, null);
+        Arrays.fill(watched, 0);
+        watching = false;
+    }
+
+    private Routine recognise(int vector) {
+        int address = read(vector);
+        if(address == 0) {
+            return null;
+        }
+        Routine routine = recogniseGetc(address);
+        if(routine == null) {
+            routine = recogniseOut(address);
+        }
+        if(routine == null) {
+            routine = recognisePuts(address);
+        }
+        return routine;
+    }
+
+    /**
+     * <pre>
+     * LDI R0, KBSR
+     * BRzp #-2
+     * LDI R0, KBDR
+     * RET
+     * </pre>
+     */
+    private Routine recogniseGetc(int address) {
+        LC3DecodedInstruction[] code = decode(address, 4);
+        if(isDeviceLoad(code[0], address, 0, LC3Keyboard.KBSR) && isBranch(code[1], BR_ZP, -2)
+                && isDeviceLoad(code[2], address + 2, 0, LC3Keyboard.KBDR) && code[3].instruction == (short) RET) {
+            return new Getc();
+        }
+        return null;
+    }
+
+    /**
+     * <pre>
+     * ST R1, SAVE_R1
+     * LDI R1, DSR
+     * BRzp #-2
+     * STI R0, DDR
+     * LD R1, SAVE_R1
+     * RET
+     * </pre>
+     */
+    private Out recogniseOut(int address) {
+        LC3DecodedInstruction[] code = decode(address, 6);
+        if(!is(code[0], LC3OperationCode.ST, 1) || !isDeviceLoad(code[1], address + 1, 1, LC3Display.DSR)
+                || !isBranch(code[2], BR_ZP, -2) || !is(code[3], LC3OperationCode.STI, 0)
+                || read(target(address + 3, code[3])) != LC3Display.DDR || !is(code[4], LC3OperationCode.LD, 1)
+                || code[5].instruction != (short) RET) {
+            return null;
+        }
+        int saveR1 = target(address, code[0]);
+        if(target(address + 4, code[4]) != saveR1 || isWatched(saveR1)) {
+            return null;
+        }
+        return new Out(saveR1);
+    }
+
+    /**
+     * <pre>
+     *       ST R0, SAVE_R0
+     *       ST R1, SAVE_R1
+     *       ST R7, SAVE_R7
+     *       ADD R1, R0, #0
+     * LOOP  LDR R0, R1, #0
+     *       BRz DONE
+     *       OUT
+     *       ADD R1, R1, #1
+     *       BRnzp LOOP
+     * DONE  LD R0, SAVE_R0
+     *       LD R1, SAVE_R1
+     *       LD R7, SAVE_R7
+     *       RET
+     * </pre>
+     * The OUT it calls has to be the standard one as well.
+     */
+    private Routine recognisePuts(int address) {
+        LC3DecodedInstruction[] code = decode(address, 13);
+        if(!is(code[0], LC3OperationCode.ST, 0) || !is(code[1], LC3OperationCode.ST, 1)
+                || !is(code[2], LC3OperationCode.ST, 7) || !isAddImmediate(code[3], 1, 0, 0)
+                || code[4].operationCode != LC3OperationCode.LDR || code[4].register != 0 || code[4].baseRegister != 1
+                || code[4].offset != 0 || !isBranch(code[5], BR_Z, 3) || code[6].operationCode != LC3OperationCode.TRAP
+                || code[6].offset != OUT_VECTOR || !isAddImmediate(code[7], 1, 1, 1) || !isBranch(code[8], BR_NZP, -5)
+                || !is(code[9], LC3OperationCode.LD, 0) || !is(code[10], LC3OperationCode.LD, 1)
+                || !is(code[11], LC3OperationCode.LD, 7) || code[12].instruction != (short) RET) {
+            return null;
+        }
+        int saveR0 = target(address, code[0]);
+        int saveR1 = target(address + 1, code[1]);
+        int saveR7 = target(address + 2, code[2]);
+        if(target(address + 9, code[9]) != saveR0 || target(address + 10, code[10]) != saveR1
+                || target(address + 11, code[11]) != saveR7 || saveR0 == saveR1 || saveR0 == saveR7
+                || saveR1 == saveR7 || isWatched(saveR0) || isWatched(saveR1) || isWatched(saveR7)) {
+            return null;
+        }
+        Routine out = get(OUT_VECTOR);
+        if(!(out instanceof Out) || ((Out) out).saveR1 == saveR0 || ((Out) out).saveR1 == saveR1
+                || ((Out) out).saveR1 == saveR7) {
+            return null;
+        }
+        return new Puts(saveR0, saveR1, saveR7, (Out) out, (address + 7) & 0xFFFF);
+    }
+
+    private LC3DecodedInstruction[] decode(int address, int length) {
+        LC3DecodedInstruction[] code = new LC3DecodedInstruction[length];
+        for(int i = 0; i < length; i++) {
+            code[i] = LC3DecodedInstruction.decode((short) read(address + i));
+        }
+        return code;
+    }
+
+    private boolean isDeviceLoad(LC3DecodedInstruction instruction, int address, int register, int device) {
+        return is(instruction, LC3OperationCode.LDI, register) && read(target(address, instruction)) == device;
+    }
+
+    private static boolean is(LC3DecodedInstruction instruction, LC3OperationCode operationCode, int register) {
+        return instruction.operationCode == operationCode && instruction.register == register;
+    }
+
+    private static boolean isBranch(LC3DecodedInstruction instruction, int conditionMask, int offset) {
+        return instruction.operationCode == LC3OperationCode.BR && instruction.conditionMask == conditionMask
+                && instruction.offset == offset;
+    }
+
+    private static boolean isAddImmediate(LC3DecodedInstruction instruction, int register, int sourceRegister,
+            int value) {
+        return instruction.operationCode == LC3OperationCode.ADD && instruction.immediateMode
+                && instruction.register == register && instruction.baseRegister == sourceRegister
+                && instruction.offset == value;
+    }
+
+    /**
+     * @return address a PC-relative instruction at the address refers to
+     */
+    private static int target(int address, LC3DecodedInstruction instruction) {
+        return (address + 1 + instruction.offset) & 0xFFFF;
+    }
+
+    /**
+     * Reads a word of RAM and watches it. Pages with devices are not read, a read could change their state.
+     */
+    private int read(int address) {
+        int index = address & 0xFFFF;
+        if(deviceBus.isDevicePage(index)) {
+            return NOT_RAM;
+        }
+        watched[index >>> 6] |= 1L << index;
+        watching = true;
+        return (int) memory.readInstruction(index) & 0xFFFF;
+    }
+
+    private boolean isWatched(int address) {
+        return (watched[address >>> 6] & 1L << address) != 0;
+    }
+
+    /**
+     * Recognised routine, leaves the machine in the state the routine returns with
+     */
+    abstract static class Routine {
+
+        abstract void execute(LC3VirtualMachine virtualMachine);
+    }
+
+    static final class Getc extends Routine {
+
+        @Override
+        void execute(LC3VirtualMachine virtualMachine) {
+            virtualMachine.getcRoutine();
+        }
+    }
+
+    static final class Out extends Routine {
+
+        final int saveR1;
+
+        private Out(int saveR1) {
+            this.saveR1 = saveR1;
+        }
+
+        @Override
+        void execute(LC3VirtualMachine virtualMachine) {
+            virtualMachine.outRoutine(this);
+        }
+    }
+
+    static final class Puts extends Routine {
+
+        final int saveR0;
+        final int saveR1;
+        final int saveR7;
+        final Out out;
+        /* R7 of the OUT calls */
+        final int outReturnAddress;
+
+        private Puts(int saveR0, int saveR1, int saveR7, Out out, int outReturnAddress) {
+            this.saveR0 = saveR0;
+            this.saveR1 = saveR1;
+            this.saveR7 = saveR7;
+            this.out = out;
+            this.outReturnAddress = outReturnAddress;
+        }
+
+        @Override
+        void execute(LC3VirtualMachine virtualMachine) {
+            virtualMachine.putsRoutine(this);
+        }
+    }
+}
@@ -1,332 +1,902 @@
 package by.babanin.vm.lc3;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Scanner;
-
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 import by.babanin.vm.ConditionFlag;
+import by.babanin.vm.ConsoleDevice;
 import by.babanin.vm.VirtualMachine;
 import by.babanin.vm.VirtualMachineMemory;
+import by.babanin.vm.exception.VirtualMachineException;
+import by.babanin.vm.instrumentation.InstrumentedMemory;
 import by.babanin.vm.util.Utils;
 
 public class LC3VirtualMachine implements VirtualMachine {
 
-    private static final Logger logger = LogManager.getLogger();
     private static final byte INSTRUCTION_SIZE = 16;
-    private static final short PC_START = 0x3000;
-    private final Map<LC3Register, Short> registers = new HashMap<>(LC3Register.values().length);
-    private final VirtualMachineMemory memory;
-
-    private boolean running;
+    static final short PC_START = 0x3000;
+    static final int R_PC = LC3Register.R_PC.getValue();
+    static final int R_COND = LC3Register.R_COND.getValue();
+    static final int R6 = LC3Register.R6.getValue();
+    static final int R7 = LC3Register.R7.getValue();
+    private static final int NO_FLAG_RESULT = Integer.MIN_VALUE;
+    private static final int MAX_ADDRESS = 1 << 16;
+    /* origin word and a word for every address */
+    private static final long MAX_IMAGE_SIZE = (MAX_ADDRESS + 1L) * Short.BYTES;
+    private static final long MAPPED_IMAGE_SIZE = 1 << 14;
+    private static final int STRING_BLOCK_SIZE = 64;
+    private static final int INTERRUPT_VECTOR_TABLE = 0x0100;
+    private static final int PRIVILEGE_MODE_VIOLATION = 0x00;
+    private static final int ILLEGAL_OPCODE = 0x01;
+    private static final int USER_MODE = 1 << 15;
+    /* the operating system of the LC-3 starts the supervisor stack below the user programs */
+    private static final short SUPERVISOR_STACK_START = PC_START;
+    final short[] registers = new short[LC3Register.R_COUNT.getValue()];
+    final VirtualMachineMemory memory;
+    private final LC3DeviceBus deviceBus;
+    private final LC3Keyboard keyboard;
+    private final ConsoleDevice console;
+    private final short[] stringBlock = new short[STRING_BLOCK_SIZE];
+    private final LC3InstructionCache instructionCache = new LC3InstructionCache();
+    private final LC3TrapRoutines trapRoutines;
+    private final long[] fusionHits = new long[LC3Superinstruction.values().length];
+    final LC3InterruptController interrupts = new LC3InterruptController();
+    /* an instrumented memory has to see every fetch, so decodings are neither cached nor fused */
+    final boolean instrumented;
+
+    boolean running;
+    long instructionCount;
+    private long dispatchCount;
+    /*
+     * Value of the last flag-setting instruction whose condition flag has not been stored in R_COND yet.
+     * Flags are derived from it only when BR or an observer of R_COND needs them.
+     */
+    private int flagResult = NO_FLAG_RESULT;
+    /* snapshot the memory was last checkpointed to or restored from */
+    private LC3Snapshot lastSnapshot;
+    /* processor status apart from the condition flag, programs start in user mode at priority 0 */
+    private boolean supervisor;
+    private int priority;
+    /* R6 of the mode that is not running */
+    private short savedSupervisorStack = SUPERVISOR_STACK_START;
+    private short savedUserStack;
 
     public LC3VirtualMachine() {
-        this.memory = new LC3Memory();
+        this(new LC3Memory());
+    }
+
+    public LC3VirtualMachine(VirtualMachineMemory memory) {
+        this(memory, new LC3SystemConsole());
+    }
+
+    /**
+     * @param memory memory of 16 bit words addressed by word, the keyboard, the display and the timer are attached on
+     *               top of it
+     * @param console keyboard and screen of the keyboard and display registers and the trap routines
+     */
+    public LC3VirtualMachine(VirtualMachineMemory memory, ConsoleDevice console) {
+        this.console = console;
+        instrumented = memory instanceof InstrumentedMemory;
+        console.setOutputListener(
+                () -> interrupts.scheduleHousekeeping(LC3ConsoleOutput.FLUSH_CHECK_INTERVAL, console::flushIfDue));
+        deviceBus = new LC3DeviceBus(memory);
+        keyboard = new LC3Keyboard(console, interrupts);
+        deviceBus.attach(LC3Keyboard.KBSR, LC3Keyboard.KBDR, keyboard);
+        deviceBus.attach(LC3Display.DSR, LC3Display.DDR, new LC3Display(console, keyboard::outputWritten));
+        deviceBus.attach(LC3Timer.TMSR, LC3Timer.TMIR, new LC3Timer(interrupts));
+        deviceBus.attach(LC3MachineControl.MCR, LC3MachineControl.MCR, new LC3MachineControl(this::stop));
+        this.memory = deviceBus;
+        trapRoutines = new LC3TrapRoutines(instrumented ? ram() : deviceBus, deviceBus);
     }
 
     @Override
     public void run() {
         setRegisterValue(LC3Register.R_PC, PC_START);
+        resume();
+    }
 
+    /**
+     * Continues the program from the current program counter until it halts, for example after {@link #restore}
+     */
+    public void resume() {
         running = true;
         while(running) {
-            short instruction = (short) memory.readInstruction(getAndIncProgramCounter());
-            LC3OperationCode operationCode = LC3OperationCode.valueOf(instruction, INSTRUCTION_SIZE);
-            operationCode.execute(this, instruction);
+            if(instructionCount >= interrupts.checkpoint) {
+                checkInterrupts();
+            }
+            step();
+        }
+    }
+
+    /**
+     * Starts the service routine of the raised interrupt with the highest priority above the one of the program
+     */
+    void checkInterrupts() {
+        int vector = interrupts.nextVector(instructionCount, priority);
+        if(vector >= 0) {
+            interrupt(vector, interrupts.getPriority(vector));
         }
     }
 
+    /**
+     * Enters the service routine of the vector in supervisor mode: the processor status and the program counter are
+     * pushed onto the supervisor stack, and the routine starts at the address the interrupt vector table holds
+     */
+    private void interrupt(int vector, int newPriority) {
+        short processorStatus = getProcessorStatus();
+        if(!supervisor) {
+            savedUserStack = registers[R6];
+            registers[R6] = savedSupervisorStack;
+            supervisor = true;
+        }
+        push(processorStatus);
+        push(registers[R_PC]);
+        priority = newPriority;
+        /* the routine starts with a defined flag, the one of the program is saved on the stack */
+        flagResult = NO_FLAG_RESULT;
+        registers[R_COND] = LC3ConditionFlag.FL_ZRO.getFlagCode();
+        registers[R_PC] = (short) memory.readInstruction(INTERRUPT_VECTOR_TABLE + vector);
+    }
+
+    /**
+     * Exceptions run at the priority of the program. A machine without an operating system has no service routine
+     * for them, so the program stops instead of jumping to address 0.
+     */
+    private void exception(int vector, String description) {
+        if(memory.readInstruction(INTERRUPT_VECTOR_TABLE + vector) == 0) {
+            throw new VirtualMachineException(description + " at x"
+                    + Integer.toHexString((registers[R_PC] - 1) & 0xFFFF).toUpperCase());
+        }
+        interrupt(vector, priority);
+    }
+
+    private void push(short value) {
+        registers[R6]--;
+        writeMemory(registers[R6] & 0xFFFF, value);
+    }
+
+    private short pop() {
+        short value = (short) memory.readInstruction(registers[R6] & 0xFFFF);
+        registers[R6]++;
+        return value;
+    }
+
+    /**
+     * @return privilege mode in bit 15, priority in bits 10-8 and the condition flag in bits 2-0
+     */
+    public short getProcessorStatus() {
+        return (short) ((supervisor ? 0 : USER_MODE) | priority << 8 | conditionCode());
+    }
+
+    private void setProcessorStatus(short processorStatus) {
+        supervisor = (processorStatus & USER_MODE) == 0;
+        priority = (processorStatus >> 8) & LC3InterruptController.MAX_PRIORITY;
+        flagResult = NO_FLAG_RESULT;
+        registers[R_COND] = (short) (processorStatus & 0x7);
+    }
+
+    /**
+     * @return controller the devices of the machine raise their interrupts with
+     */
+    public LC3InterruptController getInterruptController() {
+        return interrupts;
+    }
+
+    /**
+     * Executes the instruction the program counter points to, or the whole superinstruction starting there
+     *
+     * @return operation code of the last executed instruction
+     */
+    LC3OperationCode step() {
+        int address = getAndIncProgramCounter() & 0xFFFF;
+        LC3DecodedInstruction decodedInstruction;
+        if(instrumented) {
+            decodedInstruction = LC3DecodedInstruction.decode((short) memory.readInstruction(address));
+        }
+        else {
+            decodedInstruction = instructionCache.get(address);
+            if(decodedInstruction == null) {
+                decodedInstruction = decode(address);
+                if(!deviceBus.isDevicePage(address)) {
+                    instructionCache.put(address, decodedInstruction);
+                }
+            }
+        }
+        dispatchCount++;
+        LC3Superinstruction superinstruction = decodedInstruction.superinstruction;
+        if(superinstruction == null) {
+            decodedInstruction.operationCode.execute(this, decodedInstruction);
+            instructionCount++;
+        }
+        else {
+            superinstruction.execute(this, decodedInstruction);
+            instructionCount += superinstruction.getLength();
+            fusionHits[superinstruction.ordinal()]++;
+        }
+        return decodedInstruction.lastOperationCode;
+    }
+
+    /**
+     * Decodes the word at the address and fuses it with the following words when they form a superinstruction.
+     * Pages the bus has devices on are never read ahead, wherever the devices were attached.
+     */
+    private LC3DecodedInstruction decode(int address) {
+        LC3DecodedInstruction first = LC3DecodedInstruction.decode((short) memory.readInstruction(address));
+        if(address + LC3Superinstruction.MAX_LENGTH > MAX_ADDRESS || deviceBus.isDevicePage(address + 1)
+                || deviceBus.isDevicePage(address + 2)) {
+            return first;
+        }
+        LC3DecodedInstruction second = LC3DecodedInstruction.decode((short) memory.readInstruction(address + 1));
+        LC3DecodedInstruction third = LC3DecodedInstruction.decode((short) memory.readInstruction(address + 2));
+        LC3Superinstruction superinstruction = LC3Superinstruction.match(first, second, third);
+        return superinstruction == null ? first : first.fuse(superinstruction, second, third);
+    }
+
+    /**
+     * @return bus the program reaches memory and devices through, further devices are attached to it
+     */
+    public LC3DeviceBus getDeviceBus() {
+        return deviceBus;
+    }
+
+    /**
+     * @return amount of instructions executed by {@link #run()} since the machine was created
+     */
+    public long getInstructionCount() {
+        return instructionCount;
+    }
+
+    /**
+     * @return amount of handler dispatches, where a superinstruction is dispatched once for all its instructions
+     */
+    public long getDispatchCount() {
+        return dispatchCount;
+    }
+
+    /**
+     * @return how many times the superinstruction was dispatched
+     */
+    public long getFusionHits(LC3Superinstruction superinstruction) {
+        return fusionHits[superinstruction.ordinal()];
+    }
+
     @Override
     public void writeProgram(long address, String program) {
-        for(int i = 0; i < program.length(); i += INSTRUCTION_SIZE) {
-            long instruction = Utils.parseLong(program.substring(i, i + INSTRUCTION_SIZE), 2);
-            memory.writeInstruction(address, instruction);
-            address ++;
+        short[] words = new short[program.length() / INSTRUCTION_SIZE];
+        for(int i = 0; i < words.length; i++) {
+            words[i] = (short) Utils.parseLong(program.substring(i * INSTRUCTION_SIZE, (i + 1) * INSTRUCTION_SIZE), 2);
+        }
+        writeMemory(address, words);
+    }
+
+    @Override
+    public void loadImage(ByteBuffer image) {
+        ByteBuffer words = image.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if(words.remaining() < Short.BYTES || words.remaining() % Short.BYTES != 0) {
+            throw new VirtualMachineException("Image of " + words.remaining() + " bytes is not a sequence of words with an origin");
+        }
+        int address = words.getShort() & 0xFFFF;
+        int end = address + words.remaining() / Short.BYTES;
+        if(end > MAX_ADDRESS) {
+            throw new VirtualMachineException("Image from " + Integer.toHexString(address) + " to " + Integer.toHexString(end)
+                    + " does not fit into memory");
+        }
+        short[] program = new short[words.remaining() / Short.BYTES];
+        words.asShortBuffer().get(program);
+        writeMemory(address, program);
+    }
+
+    /**
+     * Images larger than {@link #MAPPED_IMAGE_SIZE} are mapped instead of being read
+     */
+    @Override
+    public void loadImage(Path path) {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size > MAX_IMAGE_SIZE) {
+                throw new VirtualMachineException(path + " of " + size + " bytes does not fit into memory");
+            }
+            loadImage(size > MAPPED_IMAGE_SIZE
+                    ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                    : ByteBuffer.wrap(Files.readAllBytes(path)));
+        }
+        catch(IOException e) {
+            throw new VirtualMachineException(path + " can't be read", e);
+        }
+    }
+
+    void writeMemory(long address, long value) {
+        memory.writeInstruction(address, value);
+        memoryWritten(address);
+    }
+
+    private void writeMemory(long address, short[] words) {
+        memory.writeBlock(address, words, 0, words.length);
+        for(int i = 0; i < words.length; i++) {
+            memoryWritten(address + i);
+        }
+    }
+
+    /**
+     * Every write of the machine ends up here so that the cached decoding of the overwritten word is dropped
+     */
+    void memoryWritten(long address) {
+        instructionCache.invalidate(address);
+        trapRoutines.memoryWritten(address);
+    }
+
+    /**
+     * Machines restored from a snapshot drop all decoded code at once instead of word by word
+     */
+    void memoryRestored() {
+        instructionCache.clear();
+        trapRoutines.clear();
+    }
+
+    /**
+     * @return registers and every page of memory that is not all zeros
+     */
+    public LC3Snapshot checkpoint() {
+        VirtualMachineMemory ram = ram();
+        short[][] pages = new short[LC3Snapshot.PAGE_COUNT][];
+        for(int page = 0; page < pages.length; page++) {
+            short[] words = new short[LC3Snapshot.PAGE_SIZE];
+            ram.readBlock((long) page * LC3Snapshot.PAGE_SIZE, words, 0, words.length);
+            for(short word : words) {
+                if(word != 0) {
+                    pages[page] = words;
+                    break;
+                }
+            }
+        }
+        return checkpoint(pages, null);
+    }
+
+    /**
+     * @return registers and the pages written since the previous checkpoint or restore, or a full snapshot when there
+     * was none. Needs a memory that tracks dirty pages, that is an {@link LC3WordMemory}.
+     */
+    public LC3Snapshot incrementalCheckpoint() {
+        if(lastSnapshot == null) {
+            return checkpoint();
+        }
+        LC3WordMemory ram = wordMemory("Incremental checkpoints");
+        short[][] pages = new short[LC3Snapshot.PAGE_COUNT][];
+        for(int page = ram.nextDirtyPage(0); page >= 0; page = ram.nextDirtyPage(page + 1)) {
+            pages[page] = new short[LC3Snapshot.PAGE_SIZE];
+            ram.readBlock((long) page * LC3Snapshot.PAGE_SIZE, pages[page], 0, LC3Snapshot.PAGE_SIZE);
+        }
+        return checkpoint(pages, lastSnapshot);
+    }
+
+    private LC3Snapshot checkpoint(short[][] pages, LC3Snapshot previous) {
+        conditionCode();
+        short[] state = Arrays.copyOf(registers, LC3Snapshot.REGISTER_COUNT);
+        state[registers.length] = getProcessorStatus();
+        state[registers.length + 1] = savedSupervisorStack;
+        state[registers.length + 2] = savedUserStack;
+        LC3Snapshot snapshot = new LC3Snapshot(state, pages, previous);
+        snapshotTaken(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Brings registers and memory back to the snapshot, {@link #resume()} continues from there.
+     * Rolling back to the last snapshot only copies the pages written since it was taken.
+     */
+    public void restore(LC3Snapshot snapshot) {
+        VirtualMachineMemory ram = ram();
+        if(snapshot == lastSnapshot && ram instanceof LC3WordMemory) {
+            LC3WordMemory wordMemory = (LC3WordMemory) ram;
+            for(int page = wordMemory.nextDirtyPage(0); page >= 0; page = wordMemory.nextDirtyPage(page + 1)) {
+                restorePage(snapshot, page);
+            }
+        }
+        else {
+            for(int page = 0; page < LC3Snapshot.PAGE_COUNT; page++) {
+                restorePage(snapshot, page);
+            }
+        }
+        short[] state = snapshot.getRegisters();
+        System.arraycopy(state, 0, registers, 0, registers.length);
+        setProcessorStatus(state[registers.length]);
+        savedSupervisorStack = state[registers.length + 1];
+        savedUserStack = state[registers.length + 2];
+        interrupts.recheck();
+        memoryRestored();
+        snapshotTaken(snapshot);
+    }
+
+    /**
+     * Hashing starts with the first call, which hashes the whole memory once. From then on every write keeps the hash
+     * of memory up to date, and the registers are folded in by each call.
+     * Needs an {@link LC3WordMemory}.
+     *
+     * @return Zobrist hash of registers, processor status and memory, equal for machines in equal states
+     */
+    public long stateHash() {
+        long hash = wordMemory("State hashing").getStateHash();
+        conditionCode();
+        for(int i = 0; i < registers.length; i++) {
+            hash ^= LC3WordMemory.zobrist(MAX_ADDRESS + i, registers[i]);
+        }
+        hash ^= LC3WordMemory.zobrist(MAX_ADDRESS + registers.length, getProcessorStatus());
+        hash ^= LC3WordMemory.zobrist(MAX_ADDRESS + registers.length + 1, savedSupervisorStack);
+        hash ^= LC3WordMemory.zobrist(MAX_ADDRESS + registers.length + 2, savedUserStack);
+        return hash;
+    }
+
+    private LC3WordMemory wordMemory(String feature) {
+        if(!(ram() instanceof LC3WordMemory)) {
+            throw new VirtualMachineException(feature + " need an LC3WordMemory");
+        }
+        return (LC3WordMemory) ram();
+    }
+
+    /**
+     * @return memory behind the devices and the instrumentation. Snapshots and hashes work on it directly, they are
+     * no accesses of the program.
+     */
+    private VirtualMachineMemory ram() {
+        VirtualMachineMemory ram = deviceBus.getMemory();
+        return ram instanceof InstrumentedMemory ? ((InstrumentedMemory) ram).getMemory() : ram;
+    }
+
+    private void restorePage(LC3Snapshot snapshot, int page) {
+        short[] words = snapshot.getPage(page);
+        if(words == null) {
+            ram().fill((long) page * LC3Snapshot.PAGE_SIZE, LC3Snapshot.PAGE_SIZE, 0);
+        }
+        else {
+            ram().writeBlock((long) page * LC3Snapshot.PAGE_SIZE, words, 0, words.length);
+        }
+    }
+
+    private void snapshotTaken(LC3Snapshot snapshot) {
+        if(ram() instanceof LC3WordMemory) {
+            ((LC3WordMemory) ram()).clearDirtyPages();
         }
+        lastSnapshot = snapshot;
     }
 
     public void setRegisterValue(LC3Register register, short value) {
-        registers.put(register, value);
+        if(register.getValue() == R_COND) {
+            flagResult = NO_FLAG_RESULT;
+        }
+        registers[register.getValue()] = value;
     }
 
     public short getRegisterValue(LC3Register register) {
-        Short value = registers.get(register);
-        if(value == null) {
-            value = 0;
-            setRegisterValue(register, value);
+        if(register.getValue() == R_COND) {
+            return conditionCode();
         }
-        return value;
+        return registers[register.getValue()];
     }
 
     public void setConditionFlag(ConditionFlag flag) {
-        setRegisterValue(LC3Register.R_COND, flag.getFlagCode());
+        flagResult = NO_FLAG_RESULT;
+        registers[R_COND] = flag.getFlagCode();
     }
 
-    private void updateFlag(LC3Register register) {
-        short value = getRegisterValue(register);
-        setConditionFlag(LC3ConditionFlag.valueOf(value, INSTRUCTION_SIZE));
+    private void updateFlag(int register) {
+        flagResult = registers[register];
+    }
+
+    /**
+     * Stores the pending condition flag in R_COND
+     *
+     * @return condition flag code
+     */
+    short conditionCode() {
+        if(flagResult != NO_FLAG_RESULT) {
+            registers[R_COND] = LC3ConditionFlag.valueOf((short) flagResult, INSTRUCTION_SIZE).getFlagCode();
+            flagResult = NO_FLAG_RESULT;
+        }
+        return registers[R_COND];
     }
 
     public ConditionFlag getConditionFlag() {
-        short value = getRegisterValue(LC3Register.R_COND);
-        return LC3ConditionFlag.valueOfFlag(value);
+        return LC3ConditionFlag.valueOfFlag(conditionCode());
     }
 
     public void setProgramCounter(short value) {
-        setRegisterValue(LC3Register.R_PC, value);
+        registers[R_PC] = value;
     }
 
     public short getProgramCounter() {
-        return getRegisterValue(LC3Register.R_PC);
+        return registers[R_PC];
     }
 
     public short getAndIncProgramCounter() {
-        short pc = getProgramCounter();
-        setProgramCounter((short) (pc + 1));
+        short pc = registers[R_PC];
+        registers[R_PC] = (short) (pc + 1);
         return pc;
     }
 
+    public short signExtend(short value, byte size) {
+        if((value >> (size - 1)) == 1) {
+            value |= (0xFFFF << size);
+        }
+        return value;
+    }
+
     public void br(short instruction) {
-        boolean n = ((instruction >>> 11) & 0x1) == 1;
-        boolean z = ((instruction >>> 10) & 0x1) == 1;
-        boolean p = ((instruction >>> 9) & 0x1) == 1;
-        short pcOffset = signExtend((short) (instruction & 0x01FF), (byte) 9);
-        short programCounter = getProgramCounter();
-        ConditionFlag conditionFlag = getConditionFlag();
+        br(LC3DecodedInstruction.decode(LC3OperationCode.BR, instruction));
+    }
 
-        logger.info("pc = {}; operation = {}; n = {}; z = {}; p = {}; pcOffset = {}",
-                Integer.toHexString(programCounter), LC3OperationCode.BR.name(), n, z, p, Integer.toHexString(pcOffset));
+    void br(LC3DecodedInstruction decodedInstruction) {
+        int conditionMask = decodedInstruction.conditionMask;
+        short pcOffset = decodedInstruction.offset;
+        short programCounter = registers[R_PC];
 
-        if((!n && !z && !p) ||
-                (n && conditionFlag == LC3ConditionFlag.FL_NEG) ||
-                (z && conditionFlag == LC3ConditionFlag.FL_ZRO) ||
-                (p && conditionFlag == LC3ConditionFlag.FL_POS)) {
-            setProgramCounter((short) (programCounter + pcOffset));
+        /* nzp flags use the same bits as condition codes, and an empty mask branches unconditionally */
+        if(conditionMask == 0 || (conditionMask & conditionCode()) != 0) {
+            registers[R_PC] = (short) (programCounter + pcOffset);
         }
     }
 
     public void add(short instruction) {
+        add(LC3DecodedInstruction.decode(LC3OperationCode.ADD, instruction));
+    }
+
+    void add(LC3DecodedInstruction decodedInstruction) {
         /* destination register (DR) */
-        LC3Register dr = LC3Register.valueOf((byte) ((instruction >>> 9) & 0x7));
+        int dr = decodedInstruction.register;
         /* first operand (SR1) */
-        LC3Register r1 = LC3Register.valueOf((byte) ((instruction >>> 6) & 0x7));
+        int r1 = decodedInstruction.baseRegister;
         /* whether we are in immediate mode */
-        short imm_flag = (short) ((instruction >>> 5) & 0x1);
-        short programCounter = getProgramCounter();
-        if(imm_flag == 1) {
-            short imm5 = signExtend((short) (instruction & 0x1F), (byte) 5);
-            setRegisterValue(dr, (short) (getRegisterValue(r1) + imm5));
-            logger.info("pc = {}; operation = {}; dr = {}; r1 = {}; imm5 = {}",
-                    Integer.toHexString(programCounter), LC3OperationCode.ADD.name(), dr, r1, Integer.toHexString(imm5));
+        if(decodedInstruction.immediateMode) {
+            short imm5 = decodedInstruction.offset;
+            registers[dr] = (short) (registers[r1] + imm5);
         }
         else {
-            LC3Register r2 = LC3Register.valueOf((byte) (instruction & 0x7));
-            setRegisterValue(dr, (short) (getRegisterValue(r1) + getRegisterValue(r2)));
-            logger.info("pc = {}; operation = {}; dr = {}; r1 = {}; r2 = {}",
-                    Integer.toHexString(programCounter), LC3OperationCode.ADD.name(), dr, r1, r2);
+            int r2 = decodedInstruction.sourceRegister;
+            registers[dr] = (short) (registers[r1] + registers[r2]);
         }
 
         updateFlag(dr);
     }
 
-    public short signExtend(short value, byte size) {
-        if((value >> (size - 1)) == 1) {
-            value |= (0xFFFF << size);
-        }
-        return value;
+    public void ld(short instruction) {
+        ld(LC3DecodedInstruction.decode(LC3OperationCode.LD, instruction));
     }
 
-    public void ld(short instruction) {
-        LC3Register dr = LC3Register.valueOf((byte) ((instruction >>> 9) & 0x7));
-        short pcOffset = signExtend((short) (instruction & 0x1FF), (byte) 9);
-        short programCounter = getProgramCounter();
-        short value = (short) memory.readInstruction(programCounter + pcOffset);
-        setRegisterValue(dr, value);
+    void ld(LC3DecodedInstruction decodedInstruction) {
+        int dr = decodedInstruction.register;
+        short pcOffset = decodedInstruction.offset;
+        short programCounter = registers[R_PC];
+        registers[dr] = (short) memory.readInstruction((programCounter + pcOffset) & 0xFFFF);
         updateFlag(dr);
-        logger.info("pc = {}; operation = {}; dr = {}; pcOffset = {}",
-                Integer.toHexString(programCounter), LC3OperationCode.LD.name(), dr, Integer.toHexString(pcOffset));
     }
 
     public void st(short instruction) {
-        LC3Register r = LC3Register.valueOf((byte) ((instruction >>> 9) & 0x7));
-        short pcOffset = signExtend((short) (instruction & 0x1FF), (byte) 9);
-        short programCounter = getProgramCounter();
-        memory.writeInstruction(programCounter + pcOffset, getRegisterValue(r));
-        logger.info("pc = {}; operation = {}; r = {}; pcOffset = {}",
-                Integer.toHexString(programCounter), LC3OperationCode.ST.name(), r, Integer.toHexString(pcOffset));
+        st(LC3DecodedInstruction.decode(LC3OperationCode.ST, instruction));
+    }
+
+    void st(LC3DecodedInstruction decodedInstruction) {
+        int r = decodedInstruction.register;
+        short pcOffset = decodedInstruction.offset;
+        short programCounter = registers[R_PC];
+        writeMemory((programCounter + pcOffset) & 0xFFFF, registers[r]);
     }
 
     public void jsr(short instruction) {
-        short programCounter = getProgramCounter();
-        setRegisterValue(LC3Register.R7, programCounter);
-        byte immFlag = (byte) ((instruction >>> 11) & 0x1);
-        if(immFlag == 0) {
-            LC3Register r0 = LC3Register.valueOf((byte) ((instruction >>> 6) & 0x7));
-            setProgramCounter(getRegisterValue(r0));
-            logger.info("pc = {}; operation = {}; r0 = {}",
-                    Integer.toHexString(programCounter), LC3OperationCode.JSR.name(), r0);
+        jsr(LC3DecodedInstruction.decode(LC3OperationCode.JSR, instruction));
+    }
+
+    void jsr(LC3DecodedInstruction decodedInstruction) {
+        short programCounter = registers[R_PC];
+        if(!decodedInstruction.immediateMode) {
+            int r0 = decodedInstruction.baseRegister;
+            registers[R7] = programCounter;
+            registers[R_PC] = registers[r0];
         }
         else {
-            short pcOffset = signExtend((short) (instruction & 0x7FF), (byte) 11);
-            setProgramCounter((short) (programCounter + pcOffset));
-            logger.info("pc = {}; operation = {}; pcOffset = {}",
-                    Integer.toHexString(programCounter), LC3OperationCode.JSR.name(), Integer.toHexString(pcOffset));
+            short pcOffset = decodedInstruction.offset;
+            registers[R7] = programCounter;
+            registers[R_PC] = (short) (programCounter + pcOffset);
         }
     }
 
     public void and(short instruction) {
-        LC3Register dr = LC3Register.valueOf((byte) ((instruction >>> 9) & 0x7));
-        LC3Register r1 = LC3Register.valueOf((byte) ((instruction >>> 6) & 0x7));
-        byte immFlag = (byte) ((instruction >>> 5) & 0x1);
-        short programCounter = getProgramCounter();
-        if(immFlag == 0) {
-            LC3Register r2 = LC3Register.valueOf((byte) (instruction & 0x7));
-            setRegisterValue(dr, (short) (getRegisterValue(r1) & getRegisterValue(r2)));
-            logger.info("pc = {}; operation = {}; dr = {}; r1 = {}; r2 = {}",
-                    Integer.toHexString(programCounter), LC3OperationCode.AND.name(), dr, r1, r2);
+        and(LC3DecodedInstruction.decode(LC3OperationCode.AND, instruction));
+    }
+
+    void and(LC3DecodedInstruction decodedInstruction) {
+        int dr = decodedInstruction.register;
+        int r1 = decodedInstruction.baseRegister;
+        if(!decodedInstruction.immediateMode) {
+            int r2 = decodedInstruction.sourceRegister;
+            registers[dr] = (short) (registers[r1] & registers[r2]);
         }
         else {
-            short imm5 = signExtend((short) (instruction & 0x1F), (byte) 5);
-            setRegisterValue(dr, (short) (getRegisterValue(r1) & imm5));
-            logger.info("pc = {}; operation = {}; dr = {}; r1 = {}; imm5 = {}",
-                    Integer.toHexString(programCounter), LC3OperationCode.AND.name(), dr, r1, Integer.toHexString(imm5));
+            short imm5 = decodedInstruction.offset;
+            registers[dr] = (short) (registers[r1] & imm5);
         }
 
         updateFlag(dr);
     }
 
     public void ldr(short instruction) {
-        LC3Register dr = LC3Register.valueOf((byte) ((instruction >>> 9) & 0x7));
-        LC3Register r1 = LC3Register.valueOf((byte) ((instruction >>> 6) & 0x7));
-        short pcOffset = signExtend((short) (instruction & 0x3F), (byte) 6);
-        int address = getRegisterValue(r1) + pcOffset;
-        short value = (short) memory.readInstruction(address);
-        setRegisterValue(dr, value);
+        ldr(LC3DecodedInstruction.decode(LC3OperationCode.LDR, instruction));
+    }
+
+    void ldr(LC3DecodedInstruction decodedInstruction) {
+        int dr = decodedInstruction.register;
+        int r1 = decodedInstruction.baseRegister;
+        short pcOffset = decodedInstruction.offset;
+        int address = (registers[r1] + pcOffset) & 0xFFFF;
+        registers[dr] = (short) memory.readInstruction(address);
         updateFlag(dr);
-        logger.info("pc = {}; operation = {}; dr = {}; r1 = {}; pcOffset = {}",
-                Integer.toHexString(getProgramCounter()), LC3OperationCode.LDR.name(), dr, r1, Integer.toHexString(pcOffset));
     }
 
     public void str(short instruction) {
-        LC3Register r0 = LC3Register.valueOf((byte) ((instruction >>> 9) & 0x7));
-        LC3Register r1 = LC3Register.valueOf((byte) ((instruction >>> 6) & 0x7));
-        short pcOffset = signExtend((short) (instruction & 0x3F), (byte) 6);
-        memory.writeInstruction(getRegisterValue(r1) + pcOffset, getRegisterValue(r0));
-        logger.info("pc = {}; operation = {}; r0 = {}; r1 = {}; pcOffset = {}",
-                Integer.toHexString(getProgramCounter()), LC3OperationCode.STR.name(), r0, r1, Integer.toHexString(pcOffset));
+        str(LC3DecodedInstruction.decode(LC3OperationCode.STR, instruction));
+    }
+
+    void str(LC3DecodedInstruction decodedInstruction) {
+        int r0 = decodedInstruction.register;
+        int r1 = decodedInstruction.baseRegister;
+        short pcOffset = decodedInstruction.offset;
+        writeMemory((registers[r1] + pcOffset) & 0xFFFF, registers[r0]);
     }
 
     public void rti(short instruction) {
-        // TODO need to implement
+        rti(LC3DecodedInstruction.decode(LC3OperationCode.RTI, instruction));
+    }
+
+    void rti(LC3DecodedInstruction decodedInstruction) {
+        if(!supervisor) {
+            exception(PRIVILEGE_MODE_VIOLATION, "RTI in user mode");
+            return;
+        }
+        registers[R_PC] = pop();
+        setProcessorStatus(pop());
+        if(!supervisor) {
+            savedSupervisorStack = registers[R6];
+            registers[R6] = savedUserStack;
+        }
+        interrupts.recheck();
     }
 
     public void not(short instruction) {
-        LC3Register dr = LC3Register.valueOf((byte) ((instruction >>> 9) & 0x7));
-        LC3Register r1 = LC3Register.valueOf((byte) ((instruction >>> 6) & 0x7));
-        setRegisterValue(dr, (short) ~getRegisterValue(r1));
+        not(LC3DecodedInstruction.decode(LC3OperationCode.NOT, instruction));
+    }
+
+    void not(LC3DecodedInstruction decodedInstruction) {
+        int dr = decodedInstruction.register;
+        int r1 = decodedInstruction.baseRegister;
+        registers[dr] = (short) ~registers[r1];
         updateFlag(dr);
-        logger.info("pc = {}; operation = {}; dr = {}; r1 = {}",
-                Integer.toHexString(getProgramCounter()), LC3OperationCode.NOT.name(), dr, r1);
     }
 
     public void ldi(short instruction) {
-        LC3Register dr = LC3Register.valueOf((byte) ((instruction >>> 9) & 0x7));
-        short pcOffset = signExtend((short) (instruction & 0x01FF), (byte) 9);
-        short programCounter = getProgramCounter();
-        setRegisterValue(dr, (short) memory.readInstruction(memory.readInstruction(programCounter + pcOffset) & 0xFFFF));
+        ldi(LC3DecodedInstruction.decode(LC3OperationCode.LDI, instruction));
+    }
+
+    void ldi(LC3DecodedInstruction decodedInstruction) {
+        int dr = decodedInstruction.register;
+        short pcOffset = decodedInstruction.offset;
+        short programCounter = registers[R_PC];
+        registers[dr] = (short) memory.readInstruction(memory.readInstruction((programCounter + pcOffset) & 0xFFFF) & 0xFFFF);
         updateFlag(dr);
-        logger.info("pc = {}; operation = {}; dr = {}; pcOffset = {}",
-                Integer.toHexString(programCounter), LC3OperationCode.LDI.name(), dr, Integer.toHexString(pcOffset));
     }
 
     public void sti(short instruction) {
-        LC3Register r0 = LC3Register.valueOf((byte) ((instruction >>> 9) & 0x7));
-        short pcOffset = signExtend((short) (instruction & 0x1FF), (byte) 9);
-        short programCounter = getProgramCounter();
-        memory.writeInstruction(memory.readInstruction(programCounter + pcOffset), getRegisterValue(r0));
-        logger.info("pc = {}; operation = {}; r0 = {}; pcOffset = {}",
-                Integer.toHexString(programCounter), LC3OperationCode.STI.name(), r0, Integer.toHexString(pcOffset));
+        sti(LC3DecodedInstruction.decode(LC3OperationCode.STI, instruction));
+    }
 
+    void sti(LC3DecodedInstruction decodedInstruction) {
+        int r0 = decodedInstruction.register;
+        short pcOffset = decodedInstruction.offset;
+        short programCounter = registers[R_PC];
+        writeMemory(memory.readInstruction((programCounter + pcOffset) & 0xFFFF) & 0xFFFF, registers[r0]);
     }
 
     public void jmp(short instruction) {
-        LC3Register r0 = LC3Register.valueOf((byte) ((instruction >>> 6) & 0x7));
-        short programCounter = getProgramCounter();
-        setProgramCounter(getRegisterValue(r0));
-        logger.info("pc = {}; operation = {}; r0 = {}",
-                Integer.toHexString(programCounter), LC3OperationCode.JMP.name(), r0);
+        jmp(LC3DecodedInstruction.decode(LC3OperationCode.JMP, instruction));
+    }
+
+    void jmp(LC3DecodedInstruction decodedInstruction) {
+        int r0 = decodedInstruction.baseRegister;
+        registers[R_PC] = registers[r0];
     }
 
     public void res(short instruction) {
-        // TODO need to implement
+        res(LC3DecodedInstruction.decode(LC3OperationCode.RES, instruction));
+    }
+
+    void res(LC3DecodedInstruction decodedInstruction) {
+        exception(ILLEGAL_OPCODE, "Illegal operation code");
     }
 
     public void lea(short instruction) {
-        LC3Register dr = LC3Register.valueOf((byte) ((instruction >>> 9) & 0x7));
-        short pcOffset = signExtend((short) (instruction & 0x01FF), (byte) 9);
-        short programCounter = getProgramCounter();
-        setRegisterValue(dr, (short) (programCounter + pcOffset));
+        lea(LC3DecodedInstruction.decode(LC3OperationCode.LEA, instruction));
+    }
+
+    void lea(LC3DecodedInstruction decodedInstruction) {
+        int dr = decodedInstruction.register;
+        short pcOffset = decodedInstruction.offset;
+        short programCounter = registers[R_PC];
+        registers[dr] = (short) (programCounter + pcOffset);
         updateFlag(dr);
-        logger.info("pc = {}; operation = {}; dr = {}; pcOffset = {}",
-                Integer.toHexString(programCounter), LC3OperationCode.LEA.name(), dr, Integer.toHexString(pcOffset));
     }
 
     public void trap(short instruction) {
-        LC3TrapCode trapCode = LC3TrapCode.valueOf((byte) (instruction & 0xFF));
-        short programCounter = getProgramCounter();
-        trapCode.execute(this);
-        logger.info("pc = {}; operation = {}; trap = {}",
-                Integer.toHexString(programCounter), LC3OperationCode.TRAP.name(), trapCode.name());
+        trap(LC3DecodedInstruction.decode(LC3OperationCode.TRAP, instruction));
+    }
+
+    void trap(LC3DecodedInstruction decodedInstruction) {
+        callServiceRoutine(decodedInstruction.offset);
+    }
+
+    /**
+     * Calls the service routine the trap vector table holds for the vector: R7 gets the return address and the routine
+     * runs as guest code, unless it is a standard routine of {@link LC3TrapRoutines} that runs as Java code.
+     * An entry of 0 means no operating system has been loaded, the built-in {@link LC3TrapCode} runs instead.
+     */
+    void callServiceRoutine(int vector) {
+        int routineAddress = (int) memory.readInstruction(vector) & 0xFFFF;
+        if(routineAddress == 0) {
+            LC3TrapCode.valueOf((byte) vector).execute(this);
+            return;
+        }
+        registers[R7] = registers[R_PC];
+        LC3TrapRoutines.Routine routine = trapRoutines.get(vector);
+        if(routine != null) {
+            routine.execute(this);
+        }
+        else {
+            registers[R_PC] = (short) routineAddress;
+        }
+    }
+
+    /**
+     * GETC of the operating system: waits for a key in R0 and returns
+     */
+    void getcRoutine() {
+        registers[0] = readKey();
+        updateFlag(0);
+        registers[R_PC] = registers[R7];
+    }
+
+    /**
+     * OUT of the operating system: saves R1, writes R0 to DDR, restores R1 and returns
+     */
+    void outRoutine(LC3TrapRoutines.Out out) {
+        writeMemory(out.saveR1, registers[1]);
+        writeMemory(LC3Display.DDR, registers[0]);
+        updateFlag(1);
+        registers[R_PC] = registers[R7];
+    }
+
+    /**
+     * PUTS of the operating system: saves R0, R1 and R7 and writes the string in blocks, leaving the save slot of
+     * every OUT it would call as the last call does. The registers are restored before it returns.
+     */
+    void putsRoutine(LC3TrapRoutines.Puts puts) {
+        writeMemory(puts.saveR0, registers[0]);
+        writeMemory(puts.saveR1, registers[1]);
+        writeMemory(puts.saveR7, registers[R7]);
+        int length = writeString(registers[0], false);
+        keyboard.outputWritten();
+        if(length > 0) {
+            writeMemory(puts.out.saveR1, (short) (registers[0] + length - 1));
+        }
+        updateFlag(R7);
+        registers[R_PC] = registers[R7];
+    }
+
+    void addBr(LC3DecodedInstruction add) {
+        LC3DecodedInstruction br = add.second;
+        short value = (short) (registers[add.baseRegister] + add.offset);
+        registers[add.register] = value;
+        flagResult = value;
+        short programCounter = (short) (registers[R_PC] + 1);
+        registers[R_PC] = programCounter;
+        if(br.conditionMask == 0 || (br.conditionMask & conditionCode()) != 0) {
+            registers[R_PC] = (short) (programCounter + br.offset);
+        }
+    }
+
+    void loadImmediate(LC3DecodedInstruction and) {
+        LC3DecodedInstruction add = and.second;
+        registers[and.register] = add.offset;
+        flagResult = add.offset;
+        registers[R_PC]++;
+    }
+
+    void readModifyWrite(LC3DecodedInstruction ldr) {
+        LC3DecodedInstruction add = ldr.second;
+        int register = ldr.register;
+        int address = (registers[ldr.baseRegister] + ldr.offset) & 0xFFFF;
+        registers[register] = (short) memory.readInstruction(address);
+        registers[R_PC] += 2;
+        registers[register] += add.immediateMode ? add.offset : registers[add.sourceRegister];
+        flagResult = registers[register];
+        writeMemory(address, registers[register]);
     }
 
     public void getc() {
-        Scanner scanner = new Scanner(System.in);
-        String str = scanner.nextLine();
-        short value = (short) (str.isEmpty() ? 0 : str.charAt(0));
-        setRegisterValue(LC3Register.R0, value);
+        setRegisterValue(LC3Register.R0, readKey());
     }
 
     public void out() {
-        char registerValue = (char) getRegisterValue(LC3Register.R0);
-        System.out.println(registerValue);
+        console.write(getRegisterValue(LC3Register.R0));
+        keyboard.outputWritten();
     }
 
     public void puts() {
-        short charAddress = getRegisterValue(LC3Register.R0);
-        char character;
-        StringBuilder builder = new StringBuilder();
-        do {
-            character = (char) memory.readInstruction(charAddress++);
-            builder.append(character);
-        }
-        while(character != 0);
-        System.out.print(builder);
+        writeString(getRegisterValue(LC3Register.R0), false);
+        keyboard.outputWritten();
     }
 
     public void in() {
-        System.out.print(">> ");
-        Scanner scanner = new Scanner(System.in);
-        String str = scanner.nextLine();
-        setRegisterValue(LC3Register.R0, (short) str.charAt(0));
+        console.write(">> ");
+        short key = readKey();
+        console.write(key);
+        setRegisterValue(LC3Register.R0, key);
+    }
+
+    /**
+     * Waits for the next key, the keys typed ahead are taken one by one
+     */
+    private short readKey() {
+        int key = keyboard.take();
+        if(key == ConsoleDevice.END_OF_INPUT) {
+            throw new VirtualMachineException("Keyboard input has ended");
+        }
+        return (short) key;
     }
 
     public void putsp() {
-        short charAddress = getRegisterValue(LC3Register.R0);
-        char twoCharacters;
-        StringBuilder builder = new StringBuilder();
-        do {
-            twoCharacters = (char) memory.readInstruction(charAddress++);
-            builder.append((char) ((twoCharacters >> 8) & 0xFF));
-            builder.append((char) (twoCharacters & 0xFF));
+        writeString(getRegisterValue(LC3Register.R0), true);
+        keyboard.outputWritten();
+    }
+
+    /**
+     * Writes the words from the address up to the terminating zero word to the output, reading them in blocks.
+     * Zero bytes are not written.
+     *
+     * @param packed whether every word holds two characters, the high byte first
+     * @return number of words before the terminating one
+     */
+    private int writeString(short address, boolean packed) {
+        int blockAddress = address & 0xFFFF;
+        while(true) {
+            /* a block past the end of memory is still read so that memory reports the address */
+            int length = Math.max(1, Math.min(stringBlock.length, MAX_ADDRESS - blockAddress));
+            memory.readBlock(blockAddress, stringBlock, 0, length);
+            for(int i = 0; i < length; i++) {
+                int word = stringBlock[i] & 0xFFFF;
+                if(word == 0) {
+                    return blockAddress + i - (address & 0xFFFF);
+                }
+                if(packed && word >>> 8 != 0) {
+                    console.write(word >>> 8);
+                }
+                if(!packed || (word & 0xFF) != 0) {
+                    console.write(word);
+                }
+            }
+            blockAddress += length;
         }
-        while(twoCharacters != 0);
-        System.out.print(builder);
     }
 
     public void halt() {
-        System.out.println("HALT");
+        console.write("HALT\n");
+        stop();
+    }
+
+    private void stop() {
+        console.flush();
         running = false;
+        memory.flush();
     }
 }
@@ -0,0 +1,221 @@
+package by.babanin.vm.lc3;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import by.babanin.vm.VirtualMachineMemory;
+import by.babanin.vm.exception.VirtualMachineException;
+
+/**
+ * Memory has 65536 cells. Each cell is 2 bytes or 16 bits.
+ * Subclasses only store the words, address checks are handled here. Memory mapped devices are attached on top of it by
+ * {@link LC3DeviceBus}.
+ * Block operations check the block once and move the words.
+ * Every write marks its page of 256 words in a bitmap of dirty pages, so that checkpoints only copy the pages written
+ * since the previous one.
+ * Once {@link #getStateHash()} has been asked for, every write also keeps a Zobrist hash of the contents up to date:
+ * the hash is the XOR of {@link #zobrist(int, short)} of every word, so a write only swaps the term of its address.
+ */
+public abstract class LC3WordMemory implements VirtualMachineMemory {
+
+    static final int MAX_ADDRESS = 1 << 16;
+    static final int PAGE_SHIFT = 8;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    static final int PAGE_COUNT = MAX_ADDRESS >>> PAGE_SHIFT;
+
+    private final long[] dirtyPages = new long[PAGE_COUNT / Long.SIZE];
+    private boolean hashing;
+    private long stateHash;
+
+    @Override
+    public void writeInstruction(long address, long instruction) {
+        validateAddress(address);
+        short value = (short) (instruction & 0xFFFF);
+        if(hashing) {
+            stateHash ^= zobrist((int) address, load((int) address)) ^ zobrist((int) address, value);
+        }
+        store((int) address, value);
+        dirtyPages[(int) address >>> PAGE_SHIFT >>> 6] |= 1L << ((int) address >>> PAGE_SHIFT);
+    }
+
+    @Override
+    public long readInstruction(long address) {
+        validateAddress(address);
+        return load((int) address);
+    }
+
+    @Override
+    public void readBlock(long address, long[] destination, int offset, int length) {
+        validateBlock(address, length);
+        Objects.checkFromIndexSize(offset, length, destination.length);
+        for(int i = 0; i < length; i++) {
+            destination[offset + i] = load((int) address + i);
+        }
+    }
+
+    @Override
+    public void readBlock(long address, short[] destination, int offset, int length) {
+        validateBlock(address, length);
+        Objects.checkFromIndexSize(offset, length, destination.length);
+        loadBlock((int) address, destination, offset, length);
+    }
+
+    @Override
+    public void writeBlock(long address, long[] source, int offset, int length) {
+        validateBlock(address, length);
+        Objects.checkFromIndexSize(offset, length, source.length);
+        hashBlock((int) address, length);
+        for(int i = 0; i < length; i++) {
+            store((int) address + i, (short) (source[offset + i] & 0xFFFF));
+        }
+        blockWritten((int) address, length);
+    }
+
+    @Override
+    public void writeBlock(long address, short[] source, int offset, int length) {
+        validateBlock(address, length);
+        Objects.checkFromIndexSize(offset, length, source.length);
+        hashBlock((int) address, length);
+        storeBlock((int) address, source, offset, length);
+        blockWritten((int) address, length);
+    }
+
+    @Override
+    public void fill(long address, int length, long instruction) {
+        validateBlock(address, length);
+        hashBlock((int) address, length);
+        fillBlock((int) address, length, (short) (instruction & 0xFFFF));
+        blockWritten((int) address, length);
+    }
+
+    @Override
+    public void copy(long sourceAddress, long destinationAddress, int length) {
+        validateBlock(sourceAddress, length);
+        validateBlock(destinationAddress, length);
+        hashBlock((int) destinationAddress, length);
+        copyBlock((int) sourceAddress, (int) destinationAddress, length);
+        blockWritten((int) destinationAddress, length);
+    }
+
+    /**
+     * @return index of the first page written since the dirty pages were last cleared, starting from the given one,
+     * or -1 when there is none
+     */
+    public int nextDirtyPage(int page) {
+        for(int i = page >>> 6; i < dirtyPages.length; i++) {
+            long bits = i == page >>> 6 ? dirtyPages[i] & -1L << page : dirtyPages[i];
+            if(bits != 0) {
+                return i * Long.SIZE + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return -1;
+    }
+
+    public void clearDirtyPages() {
+        Arrays.fill(dirtyPages, 0);
+    }
+
+    /**
+     * The first call hashes the whole memory, later calls return the hash the writes kept up to date
+     *
+     * @return Zobrist hash of the contents, equal for equal contents
+     */
+    public long getStateHash() {
+        if(!hashing) {
+            stateHash = 0;
+            xorTerms(0, MAX_ADDRESS);
+            hashing = true;
+        }
+        return stateHash;
+    }
+
+    /**
+     * @return random looking key of the value at the address, 0 for a zero word so that untouched memory hashes to 0
+     */
+    static long zobrist(int address, short value) {
+        if(value == 0) {
+            return 0;
+        }
+        /* SplitMix64 finalizer */
+        long key = ((long) address << 16 | (value & 0xFFFF)) * 0x9E3779B97F4A7C15L;
+        key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+        key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+        return key ^ (key >>> 31);
+    }
+
+    protected abstract short load(int address);
+
+    protected abstract void store(int address, short value);
+
+    protected void loadBlock(int address, short[] destination, int offset, int length) {
+        for(int i = 0; i < length; i++) {
+            destination[offset + i] = load(address + i);
+        }
+    }
+
+    protected void storeBlock(int address, short[] source, int offset, int length) {
+        for(int i = 0; i < length; i++) {
+            store(address + i, source[offset + i]);
+        }
+    }
+
+    protected void fillBlock(int address, int length, short value) {
+        for(int i = 0; i < length; i++) {
+            store(address + i, value);
+        }
+    }
+
+    protected void copyBlock(int sourceAddress, int destinationAddress, int length) {
+        if(destinationAddress <= sourceAddress) {
+            for(int i = 0; i < length; i++) {
+                store(destinationAddress + i, load(sourceAddress + i));
+            }
+        }
+        else {
+            for(int i = length - 1; i >= 0; i--) {
+                store(destinationAddress + i, load(sourceAddress + i));
+            }
+        }
+    }
+
+    /**
+     * XORs the terms of the block into the hash, once before the block is written to take the old words out and once
+     * after to put the new ones in
+     */
+    private void hashBlock(int address, int length) {
+        if(hashing) {
+            xorTerms(address, length);
+        }
+    }
+
+    private void xorTerms(int address, int length) {
+        for(int i = address; i < address + length; i++) {
+            stateHash ^= zobrist(i, load(i));
+        }
+    }
+
+    private void blockWritten(int address, int length) {
+        hashBlock(address, length);
+        markDirty(address, length);
+    }
+
+    private void markDirty(int address, int length) {
+        for(int page = address >>> PAGE_SHIFT; page <= (address + length - 1) >> PAGE_SHIFT; page++) {
+            dirtyPages[page >>> 6] |= 1L << page;
+        }
+    }
+
+    private void validateBlock(long address, int length) {
+        if(length < 0 || address < 0 || address + length > MAX_ADDRESS) {
+            throw new VirtualMachineException("Invalid block: " + Long.toHexString(address) + " of " + length
+                    + " words. Memory range: [0," + Long.toHexString(MAX_ADDRESS - 1) + "]");
+        }
+    }
+
+    private void validateAddress(long address) {
+        if(address < 0 || address >= MAX_ADDRESS) {
+            throw new VirtualMachineException(
+                    "Invalid address: " + Long.toHexString(address) + ". Memory range: [0," + Long.toHexString(MAX_ADDRESS - 1) + "]");
+        }
+    }
+}
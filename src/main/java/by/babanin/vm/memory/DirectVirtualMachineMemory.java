@@ -0,0 +1,76 @@
+package by.babanin.vm.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Packed memory outside of the Java heap. Cells are kept in direct buffers of up to 2^24 cells (128 MB) each,
+ * so the size is not limited by the length of an array, and the collector never scans the cells.
+ * Direct buffers still count against {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size
+ * ({@code -Xmx}); larger memories need the flag raised. The buffers are not released explicitly, their memory is only
+ * freed once this object has been garbage-collected.
+ */
+public class DirectVirtualMachineMemory extends PackedVirtualMachineMemory {
+
+    static final int DEFAULT_SEGMENT_SHIFT = 24;
+
+    private final ByteBuffer[] segments;
+    private final int segmentShift;
+    private final long segmentMask;
+
+    public DirectVirtualMachineMemory(final long cellsAmount, final byte instructionSize) {
+        this(cellsAmount, instructionSize, DEFAULT_SEGMENT_SHIFT);
+    }
+
+    /**
+     * @param segmentShift every segment holds 2^segmentShift cells
+     */
+    DirectVirtualMachineMemory(final long cellsAmount, final byte instructionSize, final int segmentShift) {
+        this(cellsAmount, instructionSize, segmentShift, allocate(cellsAmount, segmentShift));
+    }
+
+    /**
+     * @param segments buffers of 2^segmentShift cells each, except for the last one
+     */
+    DirectVirtualMachineMemory(final long cellsAmount, final byte instructionSize, final int segmentShift,
+            final ByteBuffer[] segments) {
+        super(cellsAmount, instructionSize);
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1L << segmentShift) - 1;
+        this.segments = segments;
+    }
+
+    static int segmentCount(final long cellsAmount, final int segmentShift) {
+        return (int) ((cellsAmount + (1L << segmentShift) - 1) >>> segmentShift);
+    }
+
+    static long segmentCells(final long cellsAmount, final int segmentShift, final int segment) {
+        return Math.min(1L << segmentShift, cellsAmount - ((long) segment << segmentShift));
+    }
+
+    private static ByteBuffer[] allocate(final long cellsAmount, final int segmentShift) {
+        if(cellsAmount <= 0) {
+            return new ByteBuffer[0];
+        }
+        ByteBuffer[] segments = new ByteBuffer[segmentCount(cellsAmount, segmentShift)];
+        for(int i = 0; i < segments.length; i++) {
+            segments[i] = ByteBuffer.allocateDirect((int) (segmentCells(cellsAmount, segmentShift, i) * Long.BYTES))
+                    .order(ByteOrder.nativeOrder());
+        }
+        return segments;
+    }
+
+    ByteBuffer[] getSegments() {
+        return segments;
+    }
+
+    @Override
+    protected long readCell(final long cellIndex) {
+        return segments[(int) (cellIndex >>> segmentShift)].getLong((int) (cellIndex & segmentMask) * Long.BYTES);
+    }
+
+    @Override
+    protected void writeCell(final long cellIndex, final long value) {
+        segments[(int) (cellIndex >>> segmentShift)].putLong((int) (cellIndex & segmentMask) * Long.BYTES, value);
+    }
+}
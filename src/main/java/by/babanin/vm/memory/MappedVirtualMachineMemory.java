@@ -0,0 +1,64 @@
+package by.babanin.vm.memory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import by.babanin.vm.exception.VirtualMachineException;
+
+/**
+ * Packed memory whose cells are a file mapped into the address space. Cells are stored big-endian, so the file is the
+ * bit stream of the memory from its first bit on.
+ * Writes go to the file, so a memory created over the same file later holds what the previous one left.
+ * A missing or short file is extended with zero cells.
+ */
+public class MappedVirtualMachineMemory extends DirectVirtualMachineMemory {
+
+    private final boolean force;
+
+    /**
+     * @param force whether {@link #flush()} waits until the written cells reach the storage device
+     */
+    public MappedVirtualMachineMemory(final Path file, final long cellsAmount, final byte instructionSize,
+            final boolean force) {
+        this(file, cellsAmount, instructionSize, DEFAULT_SEGMENT_SHIFT, force);
+    }
+
+    MappedVirtualMachineMemory(final Path file, final long cellsAmount, final byte instructionSize,
+            final int segmentShift, final boolean force) {
+        super(cellsAmount, instructionSize, segmentShift, map(file, cellsAmount, segmentShift));
+        this.force = force;
+    }
+
+    private static ByteBuffer[] map(final Path file, final long cellsAmount, final int segmentShift) {
+        if(cellsAmount <= 0) {
+            return new ByteBuffer[0];
+        }
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer[] segments = new ByteBuffer[segmentCount(cellsAmount, segmentShift)];
+            for(int i = 0; i < segments.length; i++) {
+                long position = ((long) i << segmentShift) * Long.BYTES;
+                long size = segmentCells(cellsAmount, segmentShift, i) * Long.BYTES;
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, size).order(ByteOrder.BIG_ENDIAN);
+            }
+            return segments;
+        }
+        catch(IOException e) {
+            throw new VirtualMachineException(file + " can't be mapped", e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if(force) {
+            for(ByteBuffer segment : getSegments()) {
+                ((MappedByteBuffer) segment).force();
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package by.babanin.vm.memory;
+
+import java.util.Objects;
+import java.util.function.IntToLongFunction;
+
+import by.babanin.vm.VirtualMachineMemory;
+import by.babanin.vm.exception.VirtualMachineException;
+
+/**
+ * Memory of 64 bit cells addressed in bits. Instructions are packed most significant bit first, so an instruction may
+ * start at any bit and continue in the next cell. Both the packing and the split are plain shifts and masks,
+ * subclasses only store the cells.
+ */
+public abstract class PackedVirtualMachineMemory implements VirtualMachineMemory {
+
+    public static final byte CELL_SIZE = 64;
+    private static final int CELL_INDEX_SHIFT = Integer.numberOfTrailingZeros(CELL_SIZE);
+    private static final long OFFSET_MASK = CELL_SIZE - 1;
+    private static final int COPY_BUFFER_SIZE = 1024;
+
+    private final byte instructionSize;
+    /* the lowest instructionSize bits */
+    private final long instructionMask;
+    private final long maxAddress;
+
+    protected PackedVirtualMachineMemory(final long cellsAmount, final byte instructionSize) {
+        if(cellsAmount <= 0) {
+            throw new VirtualMachineException("Amount of memory cells cannot be less than or equal to 0");
+        }
+        if(cellsAmount > Long.MAX_VALUE / CELL_SIZE) {
+            throw new VirtualMachineException("Amount of memory cells cannot be greater than " + Long.MAX_VALUE / CELL_SIZE);
+        }
+        if(instructionSize < 2 || instructionSize > CELL_SIZE) {
+            throw new VirtualMachineException(
+                    "Invalid instruction size: " + instructionSize + ". Instruction size range: [2," + CELL_SIZE + "]");
+        }
+        this.instructionSize = instructionSize;
+        this.instructionMask = -1L >>> (CELL_SIZE - instructionSize);
+        this.maxAddress = cellsAmount * CELL_SIZE - instructionSize;
+    }
+
+    protected abstract long readCell(long cellIndex);
+
+    protected abstract void writeCell(long cellIndex, long value);
+
+    @Override
+    public void writeInstruction(final long address, final long instruction) {
+        validateAddress(address);
+        final long cellIndex = address >>> CELL_INDEX_SHIFT;
+        final int offset = (int) (address & OFFSET_MASK);
+        final long value = instruction & instructionMask;
+        final int shift = CELL_SIZE - instructionSize - offset;
+        if(shift >= 0) {
+            writeCell(cellIndex, (readCell(cellIndex) & ~(instructionMask << shift)) | (value << shift));
+        }
+        else {
+            final int lastPartSize = -shift;
+            final long firstPartMask = -1L >>> offset;
+            writeCell(cellIndex, (readCell(cellIndex) & ~firstPartMask) | (value >>> lastPartSize));
+            writeCell(cellIndex + 1, (readCell(cellIndex + 1) & (-1L >>> lastPartSize)) | (value << (CELL_SIZE - lastPartSize)));
+        }
+    }
+
+    @Override
+    public long readInstruction(final long address) {
+        validateAddress(address);
+        final long cellIndex = address >>> CELL_INDEX_SHIFT;
+        final int offset = (int) (address & OFFSET_MASK);
+        final int shift = CELL_SIZE - instructionSize - offset;
+        if(shift >= 0) {
+            return (readCell(cellIndex) >>> shift) & instructionMask;
+        }
+        final int lastPartSize = -shift;
+        final long firstPart = readCell(cellIndex) & (-1L >>> offset);
+        return (firstPart << lastPartSize) | (readCell(cellIndex + 1) >>> (CELL_SIZE - lastPartSize));
+    }
+
+    @Override
+    public int getAddressesPerInstruction() {
+        return instructionSize;
+    }
+
+    @Override
+    public void readBlock(final long address, final long[] destination, final int offset, final int length) {
+        Objects.checkFromIndexSize(offset, length, destination.length);
+        readRun(address, length, (index, instruction) -> destination[offset + index] = instruction);
+    }
+
+    @Override
+    public void readBlock(final long address, final short[] destination, final int offset, final int length) {
+        Objects.checkFromIndexSize(offset, length, destination.length);
+        readRun(address, length, (index, instruction) -> destination[offset + index] = (short) instruction);
+    }
+
+    @Override
+    public void writeBlock(final long address, final long[] source, final int offset, final int length) {
+        Objects.checkFromIndexSize(offset, length, source.length);
+        writeRun(address, length, index -> source[offset + index]);
+    }
+
+    @Override
+    public void writeBlock(final long address, final short[] source, final int offset, final int length) {
+        Objects.checkFromIndexSize(offset, length, source.length);
+        writeRun(address, length, index -> source[offset + index] & 0xFFFF);
+    }
+
+    @Override
+    public void fill(final long address, final int length, final long instruction) {
+        writeRun(address, length, index -> instruction);
+    }
+
+    @Override
+    public void copy(final long sourceAddress, final long destinationAddress, final int length) {
+        validateBlock(sourceAddress, length);
+        validateBlock(destinationAddress, length);
+        final long[] buffer = new long[Math.min(length, COPY_BUFFER_SIZE)];
+        final boolean backward = destinationAddress > sourceAddress;
+        for(int done = 0; done < length; done += buffer.length) {
+            final int count = Math.min(buffer.length, length - done);
+            final long skipped = (long) (backward ? length - done - count : done) * instructionSize;
+            readBlock(sourceAddress + skipped, buffer, 0, count);
+            writeBlock(destinationAddress + skipped, buffer, 0, count);
+        }
+    }
+
+    @FunctionalInterface
+    private interface InstructionConsumer {
+
+        void accept(int index, long instruction);
+    }
+
+    /**
+     * Reads a block walking the cells once, every cell is read a single time even if instructions straddle it
+     */
+    private void readRun(final long address, final int length, final InstructionConsumer consumer) {
+        validateBlock(address, length);
+        if(length == 0) {
+            return;
+        }
+        long cellIndex = address >>> CELL_INDEX_SHIFT;
+        int bit = (int) (address & OFFSET_MASK);
+        long cell = readCell(cellIndex);
+        for(int i = 0; i < length; i++) {
+            final int free = CELL_SIZE - bit;
+            if(instructionSize < free) {
+                consumer.accept(i, (cell >>> (free - instructionSize)) & instructionMask);
+                bit += instructionSize;
+            }
+            else if(instructionSize == free) {
+                consumer.accept(i, cell & instructionMask);
+                bit = 0;
+                if(i + 1 < length) {
+                    cell = readCell(++cellIndex);
+                }
+            }
+            else {
+                final int lastPartSize = instructionSize - free;
+                final long firstPart = cell & (-1L >>> bit);
+                cell = readCell(++cellIndex);
+                consumer.accept(i, (firstPart << lastPartSize) | (cell >>> (CELL_SIZE - lastPartSize)));
+                bit = lastPartSize;
+            }
+        }
+    }
+
+    /**
+     * Writes a block walking the cells once. Whole cells are assembled and written without reading them, only the
+     * first and the last cell of the block are merged with the bits around it.
+     */
+    private void writeRun(final long address, final int length, final IntToLongFunction instructions) {
+        validateBlock(address, length);
+        if(length == 0) {
+            return;
+        }
+        long cellIndex = address >>> CELL_INDEX_SHIFT;
+        int bit = (int) (address & OFFSET_MASK);
+        long cell = bit == 0 ? 0 : readCell(cellIndex) & ~(-1L >>> bit);
+        for(int i = 0; i < length; i++) {
+            final long value = instructions.applyAsLong(i) & instructionMask;
+            final int free = CELL_SIZE - bit;
+            if(instructionSize < free) {
+                cell |= value << (free - instructionSize);
+                bit += instructionSize;
+            }
+            else if(instructionSize == free) {
+                writeCell(cellIndex++, cell | value);
+                cell = 0;
+                bit = 0;
+            }
+            else {
+                final int lastPartSize = instructionSize - free;
+                writeCell(cellIndex++, cell | (value >>> lastPartSize));
+                cell = value << (CELL_SIZE - lastPartSize);
+                bit = lastPartSize;
+            }
+        }
+        if(bit != 0) {
+            writeCell(cellIndex, cell | (readCell(cellIndex) & (-1L >>> bit)));
+        }
+    }
+
+    private void validateBlock(final long address, final int length) {
+        final boolean outOfRange = length > 0 && (address > maxAddress || (maxAddress - address) / instructionSize < length - 1);
+        if(length < 0 || address < 0 || outOfRange) {
+            throw new VirtualMachineException("Invalid block: " + Long.toHexString(address) + " of " + length
+                    + " instructions. Memory range: [0," + Long.toHexString(maxAddress) + "]");
+        }
+    }
+
+    private void validateAddress(long address) {
+        if(address < 0 || address > maxAddress) {
+            throw new VirtualMachineException(
+                    "Invalid address: " + Long.toHexString(address) + ". Memory range: [0," + Long.toHexString(maxAddress) + "]");
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package by.babanin.vm.trace;
+
+import java.nio.file.Path;
+
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+
+/**
+ * Publishes {@link TraceRecord}s of the executing machine into a preallocated ring buffer. A background thread writes
+ * them to a binary file that {@link TraceDecoder} renders as text.
+ * The machine only copies a few fields into the next free record, so tracing allocates nothing while it runs.
+ */
+public class ExecutionTracer implements AutoCloseable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final TraceFileWriter writer;
+    private final Disruptor<TraceRecord> disruptor;
+    private final RingBuffer<TraceRecord> ringBuffer;
+
+    public ExecutionTracer(Path file) {
+        this(file, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize amount of records in the ring buffer, a power of 2
+     */
+    public ExecutionTracer(Path file, int bufferSize) {
+        writer = new TraceFileWriter(file);
+        disruptor = new Disruptor<>(TraceRecord::new, bufferSize, runnable -> {
+            Thread thread = new Thread(runnable, "execution-tracer");
+            thread.setDaemon(true);
+            return thread;
+        }, ProducerType.SINGLE, new SleepingWaitStrategy());
+        disruptor.handleEventsWith(writer);
+        ringBuffer = disruptor.start();
+    }
+
+    /**
+     * @param register     index of the changed general purpose register or {@link TraceRecord#NO_REGISTER}
+     * @param writeAddress address of the written memory word or a negative value when nothing was written
+     */
+    public void trace(short programCounter, short instruction, int register, short registerValue, int writeAddress,
+            short writeValue) {
+        long sequence = ringBuffer.next();
+        try {
+            ringBuffer.get(sequence).set(programCounter, instruction, register, registerValue, writeAddress, writeValue);
+        }
+        finally {
+            ringBuffer.publish(sequence);
+        }
+    }
+
+    /**
+     * Waits until every published record is in the file and closes it
+     */
+    @Override
+    public void close() {
+        disruptor.shutdown();
+        writer.close();
+    }
+}
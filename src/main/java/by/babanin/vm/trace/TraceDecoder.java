@@ -0,0 +1,70 @@
+package by.babanin.vm.trace;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import by.babanin.vm.exception.VirtualMachineException;
+import by.babanin.vm.lc3.LC3OperationCode;
+
+/**
+ * Renders a trace file written by {@link ExecutionTracer}, one instruction per line:
+ * <pre>
+ * x3001 x103F ADD  R0 = x03FE
+ * x3004 x3403 ST   [x3008] = x0005
+ * </pre>
+ * Usage: {@code TraceDecoder <trace file>}
+ */
+public final class TraceDecoder {
+
+    private static final byte INSTRUCTION_SIZE = 16;
+
+    private TraceDecoder() {
+    }
+
+    public static void main(String[] args) {
+        decode(Paths.get(args[0]), System.out);
+    }
+
+    public static void decode(Path file, PrintStream out) {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if(in.readInt() != TraceFileWriter.MAGIC) {
+                throw new VirtualMachineException(file + " is not a trace file");
+            }
+            byte[] bytes = new byte[TraceRecord.SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            TraceRecord record = new TraceRecord();
+            while(in.readNBytes(bytes, 0, bytes.length) == bytes.length) {
+                buffer.clear();
+                record.readFrom(buffer);
+                out.println(format(record));
+            }
+        }
+        catch(IOException e) {
+            throw new VirtualMachineException("Trace file " + file + " can't be read", e);
+        }
+    }
+
+    public static String format(TraceRecord record) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(hex(record.getProgramCounter())).append(' ')
+                .append(hex(record.getInstruction())).append(' ')
+                .append(String.format("%-4s", LC3OperationCode.valueOf(record.getInstruction(), INSTRUCTION_SIZE)));
+        if(record.getRegister() != TraceRecord.NO_REGISTER) {
+            builder.append(" R").append(record.getRegister()).append(" = ").append(hex(record.getRegisterValue()));
+        }
+        if(record.isMemoryWritten()) {
+            builder.append(" [").append(hex(record.getWriteAddress())).append("] = ").append(hex(record.getWriteValue()));
+        }
+        return builder.toString().stripTrailing();
+    }
+
+    private static String hex(short value) {
+        return String.format("x%04X", value & 0xFFFF);
+    }
+}
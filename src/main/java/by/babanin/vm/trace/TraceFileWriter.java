@@ -0,0 +1,61 @@
+package by.babanin.vm.trace;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.lmax.disruptor.EventHandler;
+
+import by.babanin.vm.exception.VirtualMachineException;
+
+/**
+ * Consumer of the trace ring buffer. Records are batched in a direct buffer that is written to the file when it is
+ * full or the consumer has caught up with the machine.
+ */
+final class TraceFileWriter implements EventHandler<TraceRecord>, AutoCloseable {
+
+    static final int MAGIC = 0x4C433354; /* "LC3T" */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    TraceFileWriter(Path file) {
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        catch(IOException e) {
+            throw new VirtualMachineException("Trace file " + file + " can't be opened", e);
+        }
+        buffer.putInt(MAGIC);
+    }
+
+    @Override
+    public void onEvent(TraceRecord record, long sequence, boolean endOfBatch) throws IOException {
+        record.writeTo(buffer);
+        if(endOfBatch || buffer.remaining() < TraceRecord.SIZE) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() {
+        try(channel) {
+            flush();
+        }
+        catch(IOException e) {
+            throw new VirtualMachineException("Trace file can't be written", e);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package by.babanin.vm.trace;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One executed instruction: its address and word, the general purpose register it changed and the memory word it wrote.
+ * Records are preallocated in the ring buffer of {@link ExecutionTracer} and reused, and each one takes {@link #SIZE}
+ * bytes in a trace file.
+ */
+public final class TraceRecord {
+
+    public static final int SIZE = 12;
+    public static final int NO_REGISTER = -1;
+    private static final byte MEMORY_WRITTEN = 1;
+
+    private short programCounter;
+    private short instruction;
+    private byte register;
+    private byte flags;
+    private short registerValue;
+    private short writeAddress;
+    private short writeValue;
+
+    void set(short programCounter, short instruction, int register, short registerValue, int writeAddress, short writeValue) {
+        this.programCounter = programCounter;
+        this.instruction = instruction;
+        this.register = (byte) register;
+        this.registerValue = registerValue;
+        this.flags = writeAddress < 0 ? 0 : MEMORY_WRITTEN;
+        this.writeAddress = (short) writeAddress;
+        this.writeValue = writeValue;
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        buffer.putShort(programCounter)
+                .putShort(instruction)
+                .put(register)
+                .put(flags)
+                .putShort(registerValue)
+                .putShort(writeAddress)
+                .putShort(writeValue);
+    }
+
+    void readFrom(ByteBuffer buffer) {
+        programCounter = buffer.getShort();
+        instruction = buffer.getShort();
+        register = buffer.get();
+        flags = buffer.get();
+        registerValue = buffer.getShort();
+        writeAddress = buffer.getShort();
+        writeValue = buffer.getShort();
+    }
+
+    public short getProgramCounter() {
+        return programCounter;
+    }
+
+    public short getInstruction() {
+        return instruction;
+    }
+
+    /**
+     * @return index of the changed general purpose register or {@link #NO_REGISTER}
+     */
+    public int getRegister() {
+        return register;
+    }
+
+    public short getRegisterValue() {
+        return registerValue;
+    }
+
+    public boolean isMemoryWritten() {
+        return (flags & MEMORY_WRITTEN) != 0;
+    }
+
+    public short getWriteAddress() {
+        return writeAddress;
+    }
+
+    public short getWriteValue() {
+        return writeValue;
+    }
+}
@@ -0,0 +1,208 @@
+package by.babanin.vm;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import by.babanin.vm.factory.VirtualMachineFactory;
+import by.babanin.vm.lc3.LC3CompilingVirtualMachine;
+import by.babanin.vm.lc3.LC3Engine;
+import by.babanin.vm.lc3.LC3InMemoryConsole;
+import by.babanin.vm.lc3.LC3Register;
+import by.babanin.vm.lc3.LC3Superinstruction;
+import by.babanin.vm.lc3.LC3VirtualMachine;
+
+class LC3EnginesTest {
+
+    private static final String COUNTDOWN_PROGRAM =
+            "0010000000000011" + // LD R0, #3
+            "0001000000111111" + // ADD R0, R0, #-1
+            "0000001111111110" + // BRp #-2
+            "1111000000100101" + // HALT
+            "0000001111111111";  // 0x03FF
+
+    private static final String SUBROUTINE_PROGRAM =
+            "1110001000001010" + // LEA R1, #10
+            "0110010001000000" + // LDR R2, R1, #0
+            "0100100000000101" + // JSR #5
+            "0111010001000001" + // STR R2, R1, #1
+            "1010011000001000" + // LDI R3, #8
+            "1001100011111111" + // NOT R4, R3
+            "0101101100101111" + // AND R5, R4, #15
+            "1111000000100101" + // HALT
+            "0001010010000010" + // ADD R2, R2, R2
+            "0001010010111111" + // ADD R2, R2, #-1
+            "1100000111000000" + // RET
+            "0000000000000101" + // 5
+            "0000000000000000" + // 0
+            "0011000000001100";  // 0x300C
+
+    private static final String SELF_MODIFYING_PROGRAM =
+            "0001000000100001" + // ADD R0, R0, #1
+            "0010010000000101" + // LD R2, #5
+            "0011010111111101" + // ST R2, #-3
+            "0001001001100001" + // ADD R1, R1, #1
+            "0001011001111110" + // ADD R3, R1, #-2
+            "0000100111111010" + // BRn #-6
+            "1111000000100101" + // HALT
+            "0001000000100101";  // ADD R0, R0, #5
+
+    private static final String PATCHED_SUPERINSTRUCTION_PROGRAM =
+            "0101000000100000" + // AND R0, R0, #0
+            "0001000000100001" + // ADD R0, R0, #1
+            "0001001001100001" + // ADD R1, R1, #1
+            "0010010000000100" + // LD R2, #4
+            "0011010111111100" + // ST R2, #-4
+            "0001011001111110" + // ADD R3, R1, #-2
+            "0000100111111001" + // BRn #-7
+            "1111000000100101" + // HALT
+            "0001000000100111";  // ADD R0, R0, #7
+
+    private static final String READ_MODIFY_WRITE_PROGRAM =
+            "1110001000000111" + // LEA R1, #7
+            "0110000001000000" + // LDR R0, R1, #0
+            "0001000000100011" + // ADD R0, R0, #3
+            "0111000001000000" + // STR R0, R1, #0
+            "0001010000111001" + // ADD R2, R0, #-7
+            "0000100111111011" + // BRn #-5
+            "0110011001000000" + // LDR R3, R1, #0
+            "1111000000100101" + // HALT
+            "0000000000000001";  // 1
+
+    /**
+     * Code and data above x8000, where addresses no longer fit into a positive short
+     */
+    private static final String HIGH_MEMORY_PROGRAM =
+            "0010000000001001" + // x8000 LD R0, #9
+            "1110001000001001" + // x8001 LEA R1, #9
+            "0001010010000000" + // x8002 ADD R2, R2, R0
+            "0111010001000000" + // x8003 STR R2, R1, #0
+            "0001000000111111" + // x8004 ADD R0, R0, #-1
+            "0000001111111100" + // x8005 BRp #-4
+            "0011010000000101" + // x8006 ST R2, #5
+            "1010011000000101" + // x8007 LDI R3, #5
+            "1011011000000100" + // x8008 STI R3, #4
+            "1111000000100101" + // x8009 HALT
+            "0000000000000011" + // x800A 3
+            "0000000000000000" + // x800B
+            "0000000000000000" + // x800C
+            "1000000000001011";  // x800D x800B
+    private static final int HIGH_MEMORY_ORIGIN = 0x8000;
+
+    private final VirtualMachineFactory factory = new VirtualMachineFactory();
+
+    @Test
+    void testCountdown() {
+        LC3VirtualMachine virtualMachine = runOnAllEngines(COUNTDOWN_PROGRAM);
+        Assertions.assertEquals(0, virtualMachine.getRegisterValue(LC3Register.R0));
+        Assertions.assertEquals(2 + 2 * 0x03FF, virtualMachine.getInstructionCount());
+    }
+
+    @Test
+    void testSubroutine() {
+        LC3VirtualMachine virtualMachine = runOnAllEngines(SUBROUTINE_PROGRAM);
+        Assertions.assertEquals(0x300B, virtualMachine.getRegisterValue(LC3Register.R1));
+        Assertions.assertEquals(9, virtualMachine.getRegisterValue(LC3Register.R2));
+        Assertions.assertEquals(9, virtualMachine.getRegisterValue(LC3Register.R3));
+        Assertions.assertEquals(-10, virtualMachine.getRegisterValue(LC3Register.R4));
+        Assertions.assertEquals(6, virtualMachine.getRegisterValue(LC3Register.R5));
+        Assertions.assertEquals(0x3003, virtualMachine.getRegisterValue(LC3Register.R7));
+    }
+
+    @Test
+    void testSelfModifyingProgram() {
+        LC3VirtualMachine virtualMachine = runOnAllEngines(SELF_MODIFYING_PROGRAM);
+        Assertions.assertEquals(6, virtualMachine.getRegisterValue(LC3Register.R0));
+    }
+
+    @Test
+    void testWriteIntoSuperinstruction() {
+        LC3VirtualMachine virtualMachine = runOnAllEngines(PATCHED_SUPERINSTRUCTION_PROGRAM);
+        Assertions.assertEquals(7, virtualMachine.getRegisterValue(LC3Register.R0));
+    }
+
+    @Test
+    void testReadModifyWrite() {
+        LC3VirtualMachine virtualMachine = runOnAllEngines(READ_MODIFY_WRITE_PROGRAM);
+        Assertions.assertEquals(7, virtualMachine.getRegisterValue(LC3Register.R3));
+    }
+
+    @Test
+    void testHighMemory() {
+        LC3VirtualMachine virtualMachine = runOnAllEngines(HIGH_MEMORY_ORIGIN, HIGH_MEMORY_PROGRAM);
+        Assertions.assertEquals(6, virtualMachine.getRegisterValue(LC3Register.R2));
+        Assertions.assertEquals(6, virtualMachine.getRegisterValue(LC3Register.R3));
+        Assertions.assertEquals((short) 0x800A, virtualMachine.getRegisterValue(LC3Register.R_PC));
+        Assertions.assertEquals(6, virtualMachine.getDeviceBus().readInstruction(0x800B));
+        Assertions.assertEquals(6, virtualMachine.getDeviceBus().readInstruction(0x800C));
+    }
+
+    @Test
+    void testSuperinstructions() {
+        LC3VirtualMachine virtualMachine = (LC3VirtualMachine) factory.lc3VirtualMachine();
+        virtualMachine.writeProgram(0x3000, COUNTDOWN_PROGRAM);
+        virtualMachine.run();
+        Assertions.assertEquals(0x03FF, virtualMachine.getFusionHits(LC3Superinstruction.ADD_BR));
+        Assertions.assertEquals(2 + 0x03FF, virtualMachine.getDispatchCount());
+
+        virtualMachine = (LC3VirtualMachine) factory.lc3VirtualMachine();
+        virtualMachine.writeProgram(0x3000, PATCHED_SUPERINSTRUCTION_PROGRAM);
+        virtualMachine.run();
+        Assertions.assertEquals(2, virtualMachine.getFusionHits(LC3Superinstruction.LOAD_IMMEDIATE));
+
+        virtualMachine = (LC3VirtualMachine) factory.lc3VirtualMachine();
+        virtualMachine.writeProgram(0x3000, READ_MODIFY_WRITE_PROGRAM);
+        virtualMachine.run();
+        Assertions.assertEquals(2, virtualMachine.getFusionHits(LC3Superinstruction.READ_MODIFY_WRITE));
+    }
+
+    @Test
+    void testCompiledBlocks() {
+        LC3CompilingVirtualMachine virtualMachine = new LC3CompilingVirtualMachine(2);
+        virtualMachine.writeProgram(0x3000, COUNTDOWN_PROGRAM);
+        virtualMachine.run();
+        Assertions.assertEquals(0, virtualMachine.getRegisterValue(LC3Register.R0));
+        Assertions.assertEquals(1, virtualMachine.getCompiledBlockCount());
+    }
+
+    @Test
+    void testWriteIntoCompiledBlock() {
+        LC3CompilingVirtualMachine virtualMachine = new LC3CompilingVirtualMachine(1);
+        virtualMachine.writeProgram(0x3000, SELF_MODIFYING_PROGRAM);
+        virtualMachine.run();
+        Assertions.assertEquals(6, virtualMachine.getRegisterValue(LC3Register.R0));
+        /* the first block at 0x3000 is discarded by its own store, the rest of it is compiled from 0x3003 */
+        Assertions.assertEquals(3, virtualMachine.getCompiledBlockCount());
+    }
+
+    private static LC3VirtualMachine runAt(int origin, String program, LC3VirtualMachine virtualMachine) {
+        virtualMachine.writeProgram(origin, program);
+        virtualMachine.setRegisterValue(LC3Register.R_PC, (short) origin);
+        virtualMachine.resume();
+        return virtualMachine;
+    }
+
+    /**
+     * Runs the program on every engine and checks they end in the same state as the method reference engine
+     *
+     * @return the compiling engine after the run
+     */
+    private static LC3VirtualMachine runOnAllEngines(String program) {
+        return runOnAllEngines(0x3000, program);
+    }
+
+    private static LC3VirtualMachine runOnAllEngines(int origin, String program) {
+        LC3VirtualMachine expected = runAt(origin, program, LC3Engine.METHOD_REFERENCE.create(new LC3InMemoryConsole()));
+        LC3VirtualMachine actual = null;
+        for(LC3Engine engine : LC3Engine.values()) {
+            actual = runAt(origin, program, engine.create(new LC3InMemoryConsole()));
+            for(LC3Register register : LC3Register.values()) {
+                if(register != LC3Register.R_COUNT) {
+                    Assertions.assertEquals(expected.getRegisterValue(register), actual.getRegisterValue(register),
+                            engine + " " + register.name());
+                }
+            }
+            Assertions.assertEquals(expected.getInstructionCount(), actual.getInstructionCount(), engine.name());
+        }
+        return actual;
+    }
+}
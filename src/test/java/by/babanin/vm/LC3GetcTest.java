@@ -1,17 +1,28 @@
 package by.babanin.vm;
 
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import by.babanin.vm.exception.VirtualMachineException;
 import by.babanin.vm.factory.VirtualMachineFactory;
+import by.babanin.vm.lc3.LC3InMemoryConsole;
 import by.babanin.vm.lc3.LC3Register;
 import by.babanin.vm.lc3.LC3VirtualMachine;
 
-public class LC3GetcTest {
+class LC3GetcTest {
+
+    private static final short GETC = (short) 0b1111_0000_00100000;
 
-    private static LC3VirtualMachine virtualMachine = (LC3VirtualMachine) new VirtualMachineFactory().lc3VirtualMachine();
+    @Test
+    void testGetc() {
+        LC3InMemoryConsole console = new LC3InMemoryConsole("ab");
+        LC3VirtualMachine virtualMachine = (LC3VirtualMachine) new VirtualMachineFactory().lc3VirtualMachine(console);
 
-    public static void main(String[] args) {
-        short instruction = (short) 0b1111_0000_00100000;
-        virtualMachine.trap(instruction);
-        char registerValue = (char) virtualMachine.getRegisterValue(LC3Register.R0);
-        System.out.println(registerValue);
+        virtualMachine.trap(GETC);
+        Assertions.assertEquals('a', virtualMachine.getRegisterValue(LC3Register.R0));
+        virtualMachine.trap(GETC);
+        Assertions.assertEquals('b', virtualMachine.getRegisterValue(LC3Register.R0));
+        Assertions.assertEquals("", console.getOutputText());
+        Assertions.assertThrows(VirtualMachineException.class, () -> virtualMachine.trap(GETC));
     }
 }
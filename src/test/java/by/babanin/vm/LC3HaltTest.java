@@ -1,14 +1,22 @@
 package by.babanin.vm;
 
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
 import by.babanin.vm.factory.VirtualMachineFactory;
+import by.babanin.vm.lc3.LC3InMemoryConsole;
 import by.babanin.vm.lc3.LC3VirtualMachine;
 
-public class LC3HaltTest {
-
-    private static LC3VirtualMachine virtualMachine = (LC3VirtualMachine) new VirtualMachineFactory().lc3VirtualMachine();
+class LC3HaltTest {
 
-    public static void main(String[] args) {
+    @Test
+    void testHalt() {
         short instruction = (short) 0b1111_0000_00100101;
+        LC3InMemoryConsole console = new LC3InMemoryConsole();
+        LC3VirtualMachine virtualMachine = (LC3VirtualMachine) new VirtualMachineFactory().lc3VirtualMachine(console);
+
         virtualMachine.trap(instruction);
+
+        Assertions.assertEquals("HALT\n", console.getOutputText());
     }
 }
@@ -1,17 +1,24 @@
 package by.babanin.vm;
 
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
 import by.babanin.vm.factory.VirtualMachineFactory;
+import by.babanin.vm.lc3.LC3InMemoryConsole;
 import by.babanin.vm.lc3.LC3Register;
 import by.babanin.vm.lc3.LC3VirtualMachine;
 
-public class LC3InTest {
-
-    private static LC3VirtualMachine virtualMachine = (LC3VirtualMachine) new VirtualMachineFactory().lc3VirtualMachine();
+class LC3InTest {
 
-    public static void main(String[] args) {
+    @Test
+    void testIn() {
         short instruction = (short) 0b1111_0000_00100011;
+        LC3InMemoryConsole console = new LC3InMemoryConsole("x");
+        LC3VirtualMachine virtualMachine = (LC3VirtualMachine) new VirtualMachineFactory().lc3VirtualMachine(console);
+
         virtualMachine.trap(instruction);
-        char registerValue = (char) virtualMachine.getRegisterValue(LC3Register.R0);
-        System.out.println(registerValue);
+
+        Assertions.assertEquals('x', virtualMachine.getRegisterValue(LC3Register.R0));
+        Assertions.assertEquals(">> x", console.getOutputText());
     }
 }
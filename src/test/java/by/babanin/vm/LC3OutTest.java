@@ -1,17 +1,26 @@
 package by.babanin.vm;
 
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
 import by.babanin.vm.factory.VirtualMachineFactory;
+import by.babanin.vm.lc3.LC3InMemoryConsole;
 import by.babanin.vm.lc3.LC3Register;
 import by.babanin.vm.lc3.LC3VirtualMachine;
 
-public class LC3OutTest {
-
-    private static LC3VirtualMachine virtualMachine = (LC3VirtualMachine) new VirtualMachineFactory().lc3VirtualMachine();
+class LC3OutTest {
 
-    public static void main(String[] args) {
+    @Test
+    void testOut() {
         short instruction = (short) 0b1111_0000_00100001;
-        char value = 'D';
-        virtualMachine.setRegisterValue(LC3Register.R0, (short) value);
+        LC3InMemoryConsole console = new LC3InMemoryConsole();
+        LC3VirtualMachine virtualMachine = (LC3VirtualMachine) new VirtualMachineFactory().lc3VirtualMachine(console);
+
+        virtualMachine.setRegisterValue(LC3Register.R0, (short) 'D');
         virtualMachine.trap(instruction);
+        virtualMachine.setRegisterValue(LC3Register.R0, (short) 'E');
+        virtualMachine.trap(instruction);
+
+        Assertions.assertEquals("DE", console.getOutputText());
     }
 }
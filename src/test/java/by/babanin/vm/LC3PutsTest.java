@@ -1,19 +1,42 @@
 package by.babanin.vm;
 
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
 import by.babanin.vm.factory.VirtualMachineFactory;
+import by.babanin.vm.lc3.LC3InMemoryConsole;
 import by.babanin.vm.lc3.LC3Register;
 import by.babanin.vm.lc3.LC3VirtualMachine;
 
-public class LC3PutsTest {
-
-    private static LC3VirtualMachine virtualMachine = (LC3VirtualMachine) new VirtualMachineFactory().lc3VirtualMachine();
+class LC3PutsTest {
 
-    public static void main(String[] args) {
+    @Test
+    void testPuts() {
         short instruction = (short) 0b1111_0000_00100010;
         short charAddress = 0x3000;
+        LC3InMemoryConsole console = new LC3InMemoryConsole();
+        LC3VirtualMachine virtualMachine = (LC3VirtualMachine) new VirtualMachineFactory().lc3VirtualMachine(console);
+
         virtualMachine.setRegisterValue(LC3Register.R0, charAddress);
         virtualMachine.writeProgram(charAddress, toBinaryString("Hello, World!"));
         virtualMachine.trap(instruction);
+
+        Assertions.assertEquals("Hello, World!", console.getOutputText());
+    }
+
+    @Test
+    void testLongString() {
+        short instruction = (short) 0b1111_0000_00100010;
+        short charAddress = (short) 0x8000;
+        String text = "0123456789".repeat(20);
+        LC3InMemoryConsole console = new LC3InMemoryConsole();
+        LC3VirtualMachine virtualMachine = (LC3VirtualMachine) new VirtualMachineFactory().lc3VirtualMachine(console);
+
+        virtualMachine.setRegisterValue(LC3Register.R0, charAddress);
+        virtualMachine.writeProgram(charAddress & 0xFFFF, toBinaryString(text));
+        virtualMachine.trap(instruction);
+
+        Assertions.assertEquals(text, console.getOutputText());
     }
 
     private static String toBinaryString(String str) {
@@ -1,19 +1,27 @@
 package by.babanin.vm;
 
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
 import by.babanin.vm.factory.VirtualMachineFactory;
+import by.babanin.vm.lc3.LC3InMemoryConsole;
 import by.babanin.vm.lc3.LC3Register;
 import by.babanin.vm.lc3.LC3VirtualMachine;
 
-public class LC3PutspTest {
-
-    private static LC3VirtualMachine virtualMachine = (LC3VirtualMachine) new VirtualMachineFactory().lc3VirtualMachine();
+class LC3PutspTest {
 
-    public static void main(String[] args) {
+    @Test
+    void testPutsp() {
         short instruction = (short) 0b1111_0000_00100100;
         short charAddress = 0x3000;
+        LC3InMemoryConsole console = new LC3InMemoryConsole();
+        LC3VirtualMachine virtualMachine = (LC3VirtualMachine) new VirtualMachineFactory().lc3VirtualMachine(console);
+
         virtualMachine.setRegisterValue(LC3Register.R0, charAddress);
         virtualMachine.writeProgram(charAddress, toBinaryString("Hello, World!"));
         virtualMachine.trap(instruction);
+
+        Assertions.assertEquals("Hello, World!", console.getOutputText());
     }
 
     private static String toBinaryString(String str) {
@@ -1,10 +1,18 @@
 package by.babanin.vm;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import by.babanin.vm.exception.VirtualMachineException;
 import by.babanin.vm.factory.VirtualMachineFactory;
 import by.babanin.vm.lc3.LC3ConditionFlag;
 import by.babanin.vm.lc3.LC3Register;
@@ -329,4 +337,112 @@ class LC3VirtualMachineTest {
         short registerValue = virtualMachine.getRegisterValue(LC3Register.R2);
         Assertions.assertEquals(26, registerValue);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testRunDoesNotAllocate() {
+        String program =
+                "0010000000000011" + // LD R0, #3
+                "0001000000111111" + // ADD R0, R0, #-1
+                "0000001111111110" + // BRp #-2
+                "1111000000100101" + // HALT
+                "0111111111111111";  // 0x7FFF
+        virtualMachine.writeProgram(0x3000, program);
+        virtualMachine.run();
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        virtualMachine.run();
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        Assertions.assertEquals(0, virtualMachine.getRegisterValue(LC3Register.R0));
+        Assertions.assertTrue(allocated < 16 * 1024, "run() allocated " + allocated + " bytes for 65536 instructions");
+    }
+
+    @Test
+    void testSelfModifyingProgram() {
+        String program =
+                "0001000000100001" + // ADD R0, R0, #1
+                "0010010000000101" + // LD R2, #5
+                "0011010111111101" + // ST R2, #-3
+                "0001001001100001" + // ADD R1, R1, #1
+                "0001011001111110" + // ADD R3, R1, #-2
+                "0000100111111010" + // BRn #-6
+                "1111000000100101" + // HALT
+                "0001000000100101";  // ADD R0, R0, #5
+        virtualMachine.writeProgram(0x3000, program);
+
+        virtualMachine.run();
+
+        Assertions.assertEquals(6, virtualMachine.getRegisterValue(LC3Register.R0));
+        Assertions.assertEquals(2, virtualMachine.getRegisterValue(LC3Register.R1));
+    }
+
+    @Test
+    void testConditionRegister() {
+        short instruction = 0b0001_111_101_1_11110; //-2
+        virtualMachine.setRegisterValue(LC3Register.R5, (short) 1);
+        virtualMachine.add(instruction);
+        Assertions.assertEquals(LC3ConditionFlag.FL_NEG.getFlagCode(), virtualMachine.getRegisterValue(LC3Register.R_COND));
+
+        virtualMachine.add(instruction);
+        virtualMachine.setConditionFlag(LC3ConditionFlag.FL_ZRO);
+        Assertions.assertEquals(LC3ConditionFlag.FL_ZRO, virtualMachine.getConditionFlag());
+
+        virtualMachine.add(instruction);
+        virtualMachine.setRegisterValue(LC3Register.R_COND, LC3ConditionFlag.FL_POS.getFlagCode());
+        Assertions.assertEquals(LC3ConditionFlag.FL_POS, virtualMachine.getConditionFlag());
+    }
+
+    @Test
+    void testLoadImage() {
+        ByteBuffer image = ByteBuffer.allocate(6).putShort((short) 0x3080).putShort((short) 0xBEEF).putShort((short) 26);
+        virtualMachine.loadImage(image.flip());
+        virtualMachine.setRegisterValue(LC3Register.R1, (short) 0x3080);
+
+        virtualMachine.ldr((short) 0b0110_000_001_000000);
+        Assertions.assertEquals((short) 0xBEEF, virtualMachine.getRegisterValue(LC3Register.R0));
+        virtualMachine.ldr((short) 0b0110_000_001_000001);
+        Assertions.assertEquals(26, virtualMachine.getRegisterValue(LC3Register.R0));
+    }
+
+    @Test
+    void testLoadImageFile(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("program.obj");
+        Files.write(path, new byte[] { 0x30, 0x00, 0x20, 0x7F, (byte) 0xF0, 0x25 }); // LD R0, #127; HALT
+        virtualMachine.loadImage(path);
+        virtualMachine.loadImage(ByteBuffer.wrap(new byte[] { 0x30, (byte) 0x80, 0x00, 0x1A }));
+
+        virtualMachine.run();
+
+        Assertions.assertEquals(26, virtualMachine.getRegisterValue(LC3Register.R0));
+    }
+
+    @Test
+    void testLoadInvalidImage() {
+        Assertions.assertThrows(VirtualMachineException.class, () -> virtualMachine.loadImage(ByteBuffer.allocate(3)));
+        Assertions.assertThrows(VirtualMachineException.class,
+                () -> virtualMachine.loadImage(ByteBuffer.allocate(6).putShort(0, (short) 0xFFFF)));
+    }
+
+    @Test
+    void testMappedMemoryWarmStart(@TempDir Path directory) {
+        String program =
+                "0010000000000011" + // LD R0, #3
+                "0001000000100001" + // ADD R0, R0, #1
+                "0011000000000001" + // ST R0, #1
+                "1111000000100101" + // HALT
+                "0000000000000000";  // counter
+        Path memoryFile = directory.resolve("memory.img");
+        VirtualMachineFactory factory = new VirtualMachineFactory();
+        LC3VirtualMachine coldMachine = (LC3VirtualMachine) factory.lc3VirtualMachine(memoryFile);
+        coldMachine.writeProgram(0x3000, program);
+        coldMachine.run();
+
+        LC3VirtualMachine warmMachine = (LC3VirtualMachine) factory.lc3VirtualMachine(memoryFile);
+        warmMachine.run();
+
+        Assertions.assertEquals(1, coldMachine.getRegisterValue(LC3Register.R0));
+        Assertions.assertEquals(2, warmMachine.getRegisterValue(LC3Register.R0));
+    }
+}
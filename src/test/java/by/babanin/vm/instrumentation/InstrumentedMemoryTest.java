@@ -0,0 +1,101 @@
+package by.babanin.vm.instrumentation;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import by.babanin.vm.lc3.LC3Engine;
+import by.babanin.vm.lc3.LC3InMemoryConsole;
+import by.babanin.vm.lc3.LC3Memory;
+import by.babanin.vm.lc3.LC3Programs;
+import by.babanin.vm.lc3.LC3Register;
+import by.babanin.vm.lc3.LC3Snapshot;
+import by.babanin.vm.lc3.LC3VirtualMachine;
+import by.babanin.vm.memory.LongVirtualMachineMemory;
+
+class InstrumentedMemoryTest {
+
+    @Test
+    void testProgram() throws IOException {
+        InstrumentedMemory memory = new InstrumentedMemory(new LC3Memory());
+        List<Long> written = new ArrayList<>();
+        memory.watch(0x3005, (address, access, instruction) -> {
+            if(access == MemoryAccess.WRITE) {
+                written.add(instruction);
+            }
+        });
+        LC3VirtualMachine virtualMachine = new LC3VirtualMachine(memory);
+        virtualMachine.writeProgram(0x3000, LC3Programs.countdown(3));
+        virtualMachine.run();
+
+        Assertions.assertEquals(0, virtualMachine.getRegisterValue(LC3Register.R0));
+        Assertions.assertEquals(List.of(3L, 2L, 1L, 0L), written);
+        MemoryHeatMap heatMap = memory.getHeatMap();
+        Assertions.assertEquals(256, heatMap.getPageSize());
+        /* the program itself and the 3 stores */
+        Assertions.assertEquals(6 + 3, heatMap.getWrites(0x30));
+        /* a fetch for each of the 11 executed instructions and the load */
+        Assertions.assertEquals(11 + 1, heatMap.getReads(0x30));
+        Assertions.assertEquals(0, heatMap.getWrites(0x31));
+        /* HALT looks up its vector in the trap vector table */
+        Assertions.assertEquals(1, heatMap.getReads(0x00));
+
+        StringWriter csv = new StringWriter();
+        heatMap.writeCsv(csv);
+        Assertions.assertEquals("address,reads,writes\n0x0,1,0\n0x3000," + heatMap.getReads(0x30) + ",9\n",
+                csv.toString());
+        StringWriter json = new StringWriter();
+        heatMap.writeJson(json);
+        Assertions.assertEquals("{\"pageSize\":256,\"pages\":[{\"address\":\"0x0\",\"reads\":1,\"writes\":0},"
+                + "{\"address\":\"0x3000\",\"reads\":" + heatMap.getReads(0x30)
+                + ",\"writes\":9}]}\n", json.toString());
+    }
+
+    @Test
+    void testEngines() {
+        for(LC3Engine engine : LC3Engine.values()) {
+            InstrumentedMemory memory = new InstrumentedMemory(new LC3Memory());
+            LC3VirtualMachine virtualMachine = engine.create(memory, new LC3InMemoryConsole());
+            virtualMachine.writeProgram(0x3000, LC3Programs.countdown(3));
+            virtualMachine.run();
+
+            Assertions.assertEquals(11 + 1, memory.getHeatMap().getReads(0x30));
+        }
+    }
+
+    @Test
+    void testSnapshotsAreNotCounted() {
+        InstrumentedMemory memory = new InstrumentedMemory(new LC3Memory());
+        LC3VirtualMachine virtualMachine = new LC3VirtualMachine(memory);
+        virtualMachine.writeProgram(0x3000, LC3Programs.countdown(3));
+        LC3Snapshot snapshot = virtualMachine.incrementalCheckpoint();
+        long hash = virtualMachine.stateHash();
+        virtualMachine.run();
+        virtualMachine.incrementalCheckpoint();
+        virtualMachine.restore(snapshot);
+        MemoryHeatMap heatMap = memory.getHeatMap();
+
+        Assertions.assertEquals(hash, virtualMachine.stateHash());
+        Assertions.assertEquals(11 + 1, heatMap.getReads(0x30));
+        Assertions.assertEquals(6 + 3, heatMap.getWrites(0x30));
+        Assertions.assertEquals(0, heatMap.getReads(0x31));
+    }
+
+    @Test
+    void testPackedMemory() {
+        InstrumentedMemory memory = new InstrumentedMemory(new LongVirtualMachineMemory(1 << 12, (byte) 16));
+        memory.writeInstruction(16 * 300, 1);
+        memory.readInstruction(16 * 300);
+        memory.readInstruction(16 * 10);
+
+        MemoryHeatMap heatMap = memory.getHeatMap();
+        Assertions.assertEquals(256 * 16, heatMap.getPageSize());
+        Assertions.assertEquals(1, heatMap.getReads(0));
+        Assertions.assertEquals(1, heatMap.getReads(1));
+        Assertions.assertEquals(1, heatMap.getWrites(1));
+    }
+}
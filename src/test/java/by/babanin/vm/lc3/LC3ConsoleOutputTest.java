@@ -0,0 +1,60 @@
+package by.babanin.vm.lc3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class LC3ConsoleOutputTest {
+
+    @Test
+    void testBuffering() {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        LC3ConsoleOutput output = new LC3ConsoleOutput(stream);
+
+        output.write("HALT\n");
+        Assertions.assertEquals(0, stream.size());
+        output.flush();
+        Assertions.assertEquals("HALT\n", stream.toString());
+
+        for(int i = 0; i <= LC3ConsoleOutput.BUFFER_SIZE; i++) {
+            output.write('a' + 0x100);
+        }
+        Assertions.assertEquals(5 + LC3ConsoleOutput.BUFFER_SIZE, stream.size());
+        Assertions.assertEquals('a', stream.toByteArray()[stream.size() - 1]);
+    }
+
+    @Test
+    void testChannel() {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        LC3ConsoleOutput output = new LC3ConsoleOutput(Channels.newChannel(stream), Duration.ofMillis(1));
+
+        output.write("ab");
+        output.flush();
+        output.flush();
+        Assertions.assertEquals("ab", stream.toString());
+    }
+
+    @Test
+    void testOutputRoutines() {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        LC3VirtualMachine virtualMachine = new LC3VirtualMachine(new LC3Memory(),
+                new LC3SystemConsole(InputStream.nullInputStream(), stream));
+        virtualMachine.writeProgram(0x3000,
+                "1110000000000101" + // LEA R0, #5
+                "1111000000100010" + // PUTS
+                "0101000000100000" + // AND R0, R0, #0
+                "0001000000101010" + // ADD R0, R0, #10
+                "1111000000100001" + // OUT
+                "1111000000100101" + // HALT
+                "0000000001101000" + // 'h'
+                "0000000001101001" + // 'i'
+                "0000000000000000");
+
+        virtualMachine.run();
+        Assertions.assertEquals("hi\nHALT\n", stream.toString());
+    }
+}
@@ -0,0 +1,48 @@
+package by.babanin.vm.lc3;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import by.babanin.vm.exception.VirtualMachineException;
+
+class LC3DecodingTest {
+
+    private static final byte INSTRUCTION_SIZE = 16;
+
+    @Test
+    void testOperationCodes() {
+        for(LC3OperationCode operationCode : LC3OperationCode.values()) {
+            short instruction = (short) ((operationCode.getCode() << 12) | 0x0ABC);
+            Assertions.assertSame(operationCode, LC3OperationCode.valueOf(instruction, INSTRUCTION_SIZE));
+        }
+    }
+
+    @Test
+    void testTrapCodes() {
+        for(LC3TrapCode trapCode : LC3TrapCode.values()) {
+            Assertions.assertSame(trapCode, LC3TrapCode.valueOf(trapCode.getValue()));
+        }
+        Assertions.assertThrows(VirtualMachineException.class, () -> LC3TrapCode.valueOf((byte) 0x00));
+        Assertions.assertThrows(VirtualMachineException.class, () -> LC3TrapCode.valueOf((byte) 0xFF));
+    }
+
+    @Test
+    void testRegisters() {
+        for(LC3Register register : LC3Register.values()) {
+            Assertions.assertSame(register, LC3Register.valueOf(register.getValue()));
+        }
+        Assertions.assertThrows(VirtualMachineException.class, () -> LC3Register.valueOf((byte) -1));
+        Assertions.assertThrows(VirtualMachineException.class, () -> LC3Register.valueOf((byte) 11));
+    }
+
+    @Test
+    void testConditionFlags() {
+        for(LC3ConditionFlag flag : LC3ConditionFlag.values()) {
+            Assertions.assertSame(flag, LC3ConditionFlag.valueOfFlag(flag.getFlagCode()));
+        }
+        Assertions.assertThrows(VirtualMachineException.class, () -> LC3ConditionFlag.valueOfFlag((short) 0));
+        Assertions.assertThrows(VirtualMachineException.class, () -> LC3ConditionFlag.valueOfFlag((short) 3));
+        Assertions.assertThrows(VirtualMachineException.class, () -> LC3ConditionFlag.valueOfFlag((short) 8));
+        Assertions.assertThrows(VirtualMachineException.class, () -> LC3ConditionFlag.valueOfFlag((short) -1));
+    }
+}
@@ -0,0 +1,96 @@
+package by.babanin.vm.lc3;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import by.babanin.vm.ConsoleDevice;
+import by.babanin.vm.exception.VirtualMachineException;
+
+class LC3DeviceBusTest {
+
+    @Test
+    void testDispatch() {
+        LC3DeviceBus bus = new LC3DeviceBus(new LC3Memory());
+        short[] register = new short[1];
+        LC3Device device = new LC3Device() {
+            @Override
+            public short read(int address) {
+                return (short) (register[0] + 1);
+            }
+
+            @Override
+            public void write(int address, short value) {
+                register[0] = value;
+            }
+        };
+        bus.attach(0xFE10, 0xFE10, device);
+
+        bus.writeInstruction(0xFE10, 41);
+        bus.writeInstruction(0xFE11, 7);
+        bus.writeInstruction(0x3000, 5);
+
+        Assertions.assertEquals(42, bus.readInstruction(0xFE10));
+        Assertions.assertEquals(7, bus.readInstruction(0xFE11));
+        Assertions.assertEquals(5, bus.readInstruction(0x3000));
+        Assertions.assertEquals(0, bus.getMemory().readInstruction(0xFE10));
+        Assertions.assertTrue(bus.isDevicePage(0xFE11));
+        Assertions.assertFalse(bus.isDevicePage(0x3000));
+        Assertions.assertThrows(VirtualMachineException.class, () -> bus.attach(0xFE00, 0xFE10, device));
+        Assertions.assertThrows(VirtualMachineException.class, () -> bus.readInstruction(0x1FE10));
+    }
+
+    @Test
+    void testDeviceBelowRegisters() {
+        for(LC3Engine engine : LC3Engine.values()) {
+            runNextToDevice(engine.create(new LC3InMemoryConsole()));
+        }
+    }
+
+    private static void runNextToDevice(LC3VirtualMachine virtualMachine) {
+        int[] reads = new int[1];
+        virtualMachine.getDeviceBus().attach(0x4000, 0x4000, new LC3Device() {
+            @Override
+            public short read(int address) {
+                reads[0]++;
+                return (short) 0xF025; // HALT
+            }
+
+            @Override
+            public void write(int address, short value) {
+            }
+        });
+        virtualMachine.writeProgram(0x3FFD,
+                "0001000000100001" + // x3FFD ADD R0, R0, #1
+                "0001000000100001" + // x3FFE ADD R0, R0, #1
+                "0001000000100001"); // x3FFF ADD R0, R0, #1
+        virtualMachine.setRegisterValue(LC3Register.R_PC, (short) 0x3FFD);
+
+        virtualMachine.resume();
+
+        Assertions.assertEquals(3, virtualMachine.getRegisterValue(LC3Register.R0));
+        /* the device is read by the fetch of the HALT only, never ahead for a superinstruction or a compiled block */
+        Assertions.assertEquals(1, reads[0]);
+    }
+
+    @Test
+    void testKeyboard() {
+        LC3Keyboard keyboard = new LC3Keyboard(
+                new LC3SystemConsole(new ByteArrayInputStream(new byte[] {'a', 'b'}), new ByteArrayOutputStream()));
+
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            while(keyboard.read(LC3Keyboard.KBSR) == 0) {
+                Thread.yield();
+            }
+        });
+        Assertions.assertEquals((short) 0x8000, keyboard.read(LC3Keyboard.KBSR));
+        Assertions.assertEquals('a', keyboard.read(LC3Keyboard.KBDR));
+        Assertions.assertEquals('b', keyboard.take());
+        Assertions.assertEquals(0, keyboard.read(LC3Keyboard.KBSR));
+        Assertions.assertEquals('b', keyboard.read(LC3Keyboard.KBDR));
+        Assertions.assertEquals(ConsoleDevice.END_OF_INPUT, keyboard.take());
+    }
+}
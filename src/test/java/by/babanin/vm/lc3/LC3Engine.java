@@ -0,0 +1,30 @@
+package by.babanin.vm.lc3;
+
+import by.babanin.vm.ConsoleDevice;
+import by.babanin.vm.VirtualMachineMemory;
+
+/**
+ * Execution engines of the LC-3 machine the tests run their programs on. The compiling engine compiles a block on its
+ * first entry, so short programs run compiled code as well.
+ */
+public enum LC3Engine {
+
+    METHOD_REFERENCE,
+    SWITCH,
+    COMPILING;
+
+    public LC3VirtualMachine create(ConsoleDevice console) {
+        return create(new LC3Memory(), console);
+    }
+
+    public LC3VirtualMachine create(VirtualMachineMemory memory, ConsoleDevice console) {
+        switch(this) {
+            case METHOD_REFERENCE:
+                return new LC3VirtualMachine(memory, console);
+            case SWITCH:
+                return new LC3SwitchVirtualMachine(memory, console);
+            default:
+                return new LC3CompilingVirtualMachine(memory, console, 1);
+        }
+    }
+}
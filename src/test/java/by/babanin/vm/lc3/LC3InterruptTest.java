@@ -0,0 +1,104 @@
+package by.babanin.vm.lc3;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import by.babanin.vm.exception.VirtualMachineException;
+
+class LC3InterruptTest {
+
+    /**
+     * Counts timer interrupts in R1 until there were 5 of them
+     */
+    private static final String TIMER_PROGRAM =
+            "0010000000000110" + // LD R0, #6       interval
+            "1011000000000110" + // STI R0, #6      TMIR
+            "0010000000000110" + // LD R0, #6       interrupt enable
+            "1011000000000110" + // STI R0, #6      TMSR
+            "0001010001111011" + // ADD R2, R1, #-5
+            "0000100111111110" + // BRn #-2
+            "1111000000100101" + // HALT
+            "0000000001100100" + // 100
+            "1111111000001010" + // xFE0A
+            "0100000000000000" + // x4000
+            "1111111000001000";  // xFE08
+
+    private static final String TIMER_HANDLER =
+            "0001001001100001" + // ADD R1, R1, #1
+            "1010011000000001" + // LDI R3, #1      TMSR, acknowledges the interrupt
+            "1000000000000000" + // RTI
+            "1111111000001000";  // xFE08
+
+    @Test
+    void testTimerInterrupt() {
+        for(LC3Engine engine : LC3Engine.values()) {
+            checkTimerInterrupt(engine.create(new LC3InMemoryConsole()));
+        }
+    }
+
+    private void checkTimerInterrupt(LC3VirtualMachine virtualMachine) {
+        virtualMachine.writeProgram(0x3000, TIMER_PROGRAM);
+        virtualMachine.writeProgram(0x4000, TIMER_HANDLER);
+        virtualMachine.writeProgram(0x0100 + LC3Timer.VECTOR, "0100000000000000");
+        virtualMachine.setRegisterValue(LC3Register.R6, (short) 0x5000);
+        virtualMachine.run();
+
+        Assertions.assertEquals(5, virtualMachine.getRegisterValue(LC3Register.R1));
+        Assertions.assertEquals((short) 0x5000, virtualMachine.getRegisterValue(LC3Register.R6));
+        Assertions.assertEquals(0x8000, virtualMachine.getProcessorStatus() & 0xFF00);
+        Assertions.assertTrue(virtualMachine.getInstructionCount() >= 500);
+        Assertions.assertTrue(virtualMachine.getInstructionCount() < 600);
+        /* PC and processor status of the last interrupt on the supervisor stack */
+        Assertions.assertEquals(0x8000, virtualMachine.memory.readInstruction(0x2FFF) & 0xFF00);
+    }
+
+    @Test
+    void testFlagOnInterruptEntry() {
+        for(LC3Engine engine : LC3Engine.values()) {
+            LC3VirtualMachine virtualMachine = engine.create(new LC3InMemoryConsole());
+            virtualMachine.writeProgram(0x0100 + LC3Timer.VECTOR, "0100000000000000");
+            virtualMachine.setRegisterValue(LC3Register.R6, (short) 0x5000);
+            virtualMachine.setConditionFlag(LC3ConditionFlag.FL_NEG);
+            virtualMachine.getInterruptController().request(LC3Timer.VECTOR, LC3Timer.PRIORITY);
+            virtualMachine.checkInterrupts();
+
+            Assertions.assertEquals(0x4000, virtualMachine.getRegisterValue(LC3Register.R_PC));
+            Assertions.assertEquals(LC3ConditionFlag.FL_ZRO, virtualMachine.getConditionFlag());
+            /* the flag of the program is part of the saved processor status */
+            Assertions.assertEquals(LC3ConditionFlag.FL_NEG.getFlagCode(),
+                    virtualMachine.memory.readInstruction(0x2FFF) & 0x7);
+        }
+    }
+
+    @Test
+    void testKeyboardInterrupt() {
+        LC3InterruptController interrupts = new LC3InterruptController();
+        LC3Keyboard keyboard = new LC3Keyboard(
+                new LC3SystemConsole(new ByteArrayInputStream(new byte[] {'a'}), new ByteArrayOutputStream()), interrupts);
+        keyboard.write(LC3Keyboard.KBSR, (short) 0x4000);
+
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            while(interrupts.nextVector(0, 0) != LC3Keyboard.VECTOR) {
+                Thread.yield();
+            }
+        });
+        Assertions.assertEquals(-1, interrupts.nextVector(0, LC3Keyboard.PRIORITY));
+        Assertions.assertEquals('a', keyboard.read(LC3Keyboard.KBDR));
+        Assertions.assertEquals(-1, interrupts.nextVector(0, 0));
+    }
+
+    @Test
+    void testExceptions() {
+        for(LC3Engine engine : LC3Engine.values()) {
+            LC3VirtualMachine virtualMachine = engine.create(new LC3InMemoryConsole());
+            virtualMachine.writeProgram(0x3000, "1000000000000000"); // RTI
+            Assertions.assertThrows(VirtualMachineException.class, virtualMachine::run);
+            virtualMachine.writeProgram(0x3000, "1101000000000000"); // RES
+            Assertions.assertThrows(VirtualMachineException.class, virtualMachine::run);
+        }
+    }
+}
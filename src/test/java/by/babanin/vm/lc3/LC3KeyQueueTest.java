@@ -0,0 +1,50 @@
+package by.babanin.vm.lc3;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class LC3KeyQueueTest {
+
+    @Test
+    void testBounds() {
+        LC3KeyQueue queue = new LC3KeyQueue(2);
+
+        Assertions.assertTrue(queue.isEmpty());
+        Assertions.assertEquals(LC3KeyQueue.EMPTY, queue.poll());
+        Assertions.assertTrue(queue.offer('a'));
+        Assertions.assertTrue(queue.offer('b'));
+        Assertions.assertFalse(queue.offer('c'));
+        Assertions.assertEquals('a', queue.poll());
+        Assertions.assertTrue(queue.offer('c'));
+        Assertions.assertEquals('b', queue.poll());
+        Assertions.assertEquals('c', queue.poll());
+        Assertions.assertTrue(queue.isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new LC3KeyQueue(3));
+    }
+
+    @Test
+    void testProducerThread() {
+        LC3KeyQueue queue = new LC3KeyQueue(16);
+        int count = 100_000;
+        Thread producer = new Thread(() -> {
+            for(int i = 0; i < count; i++) {
+                while(!queue.offer(i & 0xFF)) {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for(int i = 0; i < count; i++) {
+                int key;
+                while((key = queue.poll()) == LC3KeyQueue.EMPTY) {
+                    Thread.yield();
+                }
+                Assertions.assertEquals(i & 0xFF, key);
+            }
+        });
+    }
+}
@@ -0,0 +1,66 @@
+package by.babanin.vm.lc3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import by.babanin.vm.ConsoleDevice;
+import by.babanin.vm.exception.VirtualMachineException;
+
+class LC3KeyboardIdleTest {
+
+    /**
+     * Spins on KBSR until a key is ready and reads it into R0
+     */
+    private static final String POLLING_PROGRAM =
+            "1010000000000011" + // LDI R0, #3      KBSR
+            "0000011111111110" + // BRzp #-2
+            "1010000000000010" + // LDI R0, #2      KBDR
+            "1111000000100101" + // HALT
+            "1111111000000000" + // xFE00
+            "1111111000000010";  // xFE02
+
+    @Test
+    void testParkUntilKey() throws Exception {
+        for(LC3Engine engine : LC3Engine.values()) {
+            PipedOutputStream keys = new PipedOutputStream();
+            ConsoleDevice console = new LC3SystemConsole(new PipedInputStream(keys), new ByteArrayOutputStream());
+            LC3VirtualMachine virtualMachine = engine.create(console);
+            virtualMachine.writeProgram(0x3000, POLLING_PROGRAM);
+            Thread machine = new Thread(virtualMachine::run);
+            machine.start();
+
+            Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                while(machine.getState() != Thread.State.WAITING) {
+                    Thread.yield();
+                }
+            });
+            keys.write('k');
+            keys.flush();
+            machine.join(10_000);
+
+            Assertions.assertFalse(machine.isAlive());
+            Assertions.assertEquals('k', virtualMachine.getRegisterValue(LC3Register.R0));
+            /* a compiled polling loop only looks at the window once its loop budget is used up */
+            long spinLimit = 2 * LC3Keyboard.IDLE_WINDOW + LC3BlockCompiler.MAX_LOOP_BUDGET;
+            Assertions.assertTrue(virtualMachine.getInstructionCount() < spinLimit,
+                    "the machine spun for " + virtualMachine.getInstructionCount() + " instructions");
+            keys.close();
+        }
+    }
+
+    @Test
+    void testEndOfInput() {
+        for(LC3Engine engine : LC3Engine.values()) {
+            LC3VirtualMachine virtualMachine = engine.create(new LC3InMemoryConsole());
+            virtualMachine.writeProgram(0x3000, POLLING_PROGRAM);
+
+            Assertions.assertThrows(VirtualMachineException.class, virtualMachine::run);
+        }
+    }
+}
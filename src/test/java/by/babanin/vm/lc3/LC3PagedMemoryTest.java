@@ -0,0 +1,82 @@
+package by.babanin.vm.lc3;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import by.babanin.vm.factory.VirtualMachineFactory;
+
+class LC3PagedMemoryTest {
+
+    @Test
+    void testCopyOnWrite() {
+        LC3PagedMemory memory = new LC3PagedMemory();
+        memory.writeInstruction(0x3000, 1);
+        LC3PagedMemory fork = memory.fork();
+        Assertions.assertEquals(0, memory.getOwnedPageCount());
+        Assertions.assertEquals(1, fork.readInstruction(0x3000));
+
+        fork.writeInstruction(0x3001, 2);
+        memory.writeInstruction(0x3000, 3);
+
+        Assertions.assertEquals(3, memory.readInstruction(0x3000));
+        Assertions.assertEquals(0, memory.readInstruction(0x3001));
+        Assertions.assertEquals(1, fork.readInstruction(0x3000));
+        Assertions.assertEquals(2, fork.readInstruction(0x3001));
+        Assertions.assertEquals(1, memory.getOwnedPageCount());
+        Assertions.assertEquals(1, fork.getOwnedPageCount());
+    }
+
+    @Test
+    void testBlocksAcrossPages() {
+        LC3PagedMemory memory = new LC3PagedMemory();
+        short[] block = new short[600];
+        for(int i = 0; i < block.length; i++) {
+            block[i] = (short) (0xFF00 + i);
+        }
+        memory.writeBlock(0x30F0, block, 0, block.length);
+        LC3PagedMemory fork = memory.fork();
+        fork.copy(0x30F0, 0x30F8, block.length);
+
+        short[] actual = new short[block.length];
+        fork.readBlock(0x30F8, actual, 0, actual.length);
+        Assertions.assertArrayEquals(block, actual);
+        Assertions.assertEquals(block[8], memory.readInstruction(0x30F8));
+        Assertions.assertEquals(block[0], fork.readInstruction(0x30F8));
+    }
+
+    @Test
+    void testSharedImage() {
+        LC3PagedMemory image = new LC3PagedMemory();
+        new LC3VirtualMachine(image).writeProgram(0x3000, LC3Programs.countdown(10));
+        VirtualMachineFactory factory = new VirtualMachineFactory();
+
+        for(int i = 0; i < 3; i++) {
+            LC3PagedMemory memory = image.fork();
+            LC3VirtualMachine virtualMachine = (LC3VirtualMachine) factory.lc3VirtualMachine(memory);
+            virtualMachine.run();
+            Assertions.assertEquals(0, virtualMachine.getRegisterValue(LC3Register.R0));
+            Assertions.assertEquals(1, memory.getOwnedPageCount());
+        }
+        Assertions.assertEquals(10, image.readInstruction(0x3005));
+    }
+
+    @Test
+    void testForkDoesNotCopyMemory() {
+        LC3PagedMemory image = new LC3PagedMemory();
+        for(int address = 0; address < 0x8000; address++) {
+            image.writeInstruction(address, address);
+        }
+        image.fork();
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        LC3PagedMemory fork = image.fork();
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        Assertions.assertEquals(0x7FFF, fork.readInstruction(0x7FFF));
+        Assertions.assertTrue(allocated < 4 * 1024, "fork() allocated " + allocated + " bytes");
+    }
+}
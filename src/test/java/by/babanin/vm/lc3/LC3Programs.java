@@ -0,0 +1,23 @@
+package by.babanin.vm.lc3;
+
+/**
+ * Programs several tests run, in the binary notation {@link LC3VirtualMachine#writeProgram} reads
+ */
+public final class LC3Programs {
+
+    private LC3Programs() {
+    }
+
+    /**
+     * Counts the word at {@code x3005} down to zero and halts, storing every step back into the word.
+     * Loaded at {@code x3000} it executes {@code 3 * count + 2} instructions.
+     */
+    public static String countdown(int count) {
+        return "0010000000000100" + // LD R0, #4
+                "0001000000111111" + // ADD R0, R0, #-1
+                "0011000000000010" + // ST R0, #2
+                "0000001111111101" + // BRp #-3
+                "1111000000100101" + // HALT
+                String.format("%16s", Integer.toBinaryString(count & 0xFFFF)).replace(' ', '0');
+    }
+}
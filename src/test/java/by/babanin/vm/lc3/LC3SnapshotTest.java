@@ -0,0 +1,91 @@
+package by.babanin.vm.lc3;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class LC3SnapshotTest {
+
+    @Test
+    void testRestore() {
+        LC3VirtualMachine virtualMachine = new LC3VirtualMachine();
+        virtualMachine.writeProgram(0x3000, LC3Programs.countdown(10));
+        virtualMachine.setProgramCounter((short) 0x3000);
+        LC3Snapshot snapshot = virtualMachine.checkpoint();
+        Assertions.assertFalse(snapshot.isIncremental());
+        Assertions.assertEquals(1, snapshot.getPageCount());
+
+        virtualMachine.resume();
+        Assertions.assertEquals(0, virtualMachine.memory.readInstruction(0x3005));
+        virtualMachine.restore(snapshot);
+        Assertions.assertEquals(10, virtualMachine.memory.readInstruction(0x3005));
+        Assertions.assertEquals(0x3000, virtualMachine.getProgramCounter());
+        Assertions.assertEquals(0, virtualMachine.getRegisterValue(LC3Register.R0));
+
+        virtualMachine.resume();
+        Assertions.assertEquals(0, virtualMachine.getRegisterValue(LC3Register.R0));
+        Assertions.assertEquals(0, virtualMachine.memory.readInstruction(0x3005));
+    }
+
+    @Test
+    void testIncrementalRestore() {
+        LC3VirtualMachine virtualMachine = new LC3VirtualMachine();
+        virtualMachine.writeProgram(0x3000, LC3Programs.countdown(10));
+        LC3Snapshot full = virtualMachine.checkpoint();
+        virtualMachine.writeProgram(0x4000, "0000000000000111");
+        LC3Snapshot incremental = virtualMachine.incrementalCheckpoint();
+        Assertions.assertTrue(incremental.isIncremental());
+        Assertions.assertEquals(1, incremental.getPageCount());
+
+        virtualMachine.run();
+        virtualMachine.writeProgram(0x5000, "0000000000000001");
+        virtualMachine.restore(incremental);
+        Assertions.assertEquals(10, virtualMachine.memory.readInstruction(0x3005));
+        Assertions.assertEquals(7, virtualMachine.memory.readInstruction(0x4000));
+        Assertions.assertEquals(0, virtualMachine.memory.readInstruction(0x5000));
+
+        virtualMachine.restore(full);
+        Assertions.assertEquals(0, virtualMachine.memory.readInstruction(0x4000));
+        Assertions.assertEquals(0, virtualMachine.incrementalCheckpoint().getPageCount());
+    }
+
+    @Test
+    void testBinaryFormat() {
+        LC3VirtualMachine virtualMachine = new LC3VirtualMachine();
+        virtualMachine.writeProgram(0x3000, LC3Programs.countdown(10));
+        LC3Snapshot full = virtualMachine.checkpoint();
+        virtualMachine.writeProgram(0x4000, "0000000000000111");
+        virtualMachine.setRegisterValue(LC3Register.R3, (short) -5);
+        LC3Snapshot incremental = virtualMachine.incrementalCheckpoint();
+
+        ByteArrayOutputStream fullBytes = new ByteArrayOutputStream();
+        full.write(fullBytes);
+        ByteArrayOutputStream incrementalBytes = new ByteArrayOutputStream();
+        incremental.write(incrementalBytes);
+        Assertions.assertEquals(4 + 1 + 26 + 2 + 1 + 512, incrementalBytes.size());
+
+        LC3Snapshot readFull = LC3Snapshot.read(new ByteArrayInputStream(fullBytes.toByteArray()), null);
+        LC3Snapshot readIncremental = LC3Snapshot.read(new ByteArrayInputStream(incrementalBytes.toByteArray()), readFull);
+        LC3VirtualMachine restored = new LC3CompilingVirtualMachine(1);
+        restored.restore(readIncremental);
+        Assertions.assertEquals(-5, restored.getRegisterValue(LC3Register.R3));
+        Assertions.assertEquals(7, restored.memory.readInstruction(0x4000));
+        restored.run();
+        Assertions.assertEquals(0, restored.getRegisterValue(LC3Register.R0));
+    }
+
+    @Test
+    void testRestoreCompiledCode() {
+        LC3CompilingVirtualMachine virtualMachine = new LC3CompilingVirtualMachine(1);
+        virtualMachine.writeProgram(0x3000, LC3Programs.countdown(10));
+        LC3Snapshot snapshot = virtualMachine.checkpoint();
+        virtualMachine.writeProgram(0x3001, "0001000000111101"); // ADD R0, R0, #-3
+        virtualMachine.run();
+        Assertions.assertEquals(-2, virtualMachine.getRegisterValue(LC3Register.R0));
+        virtualMachine.restore(snapshot);
+        virtualMachine.run();
+        Assertions.assertEquals(0, virtualMachine.getRegisterValue(LC3Register.R0));
+    }
+}
@@ -0,0 +1,58 @@
+package by.babanin.vm.lc3;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import by.babanin.vm.exception.VirtualMachineException;
+import by.babanin.vm.memory.LongVirtualMachineMemory;
+
+class LC3StateHashTest {
+
+    @Test
+    void testEqualStates() {
+        LC3VirtualMachine first = new LC3VirtualMachine();
+        first.writeProgram(0x3000, LC3Programs.countdown(10));
+        long initial = first.stateHash();
+        first.run();
+
+        LC3VirtualMachine second = new LC3CompilingVirtualMachine(1);
+        second.writeProgram(0x3000, LC3Programs.countdown(10));
+        Assertions.assertEquals(initial, second.stateHash());
+        second.run();
+
+        Assertions.assertNotEquals(initial, first.stateHash());
+        Assertions.assertEquals(first.stateHash(), second.stateHash());
+    }
+
+    @Test
+    void testIncrementalUpdates() {
+        LC3VirtualMachine virtualMachine = new LC3VirtualMachine(new LC3PagedMemory());
+        virtualMachine.writeProgram(0x3000, LC3Programs.countdown(10));
+        long initial = virtualMachine.stateHash();
+        LC3Snapshot snapshot = virtualMachine.checkpoint();
+
+        virtualMachine.writeProgram(0x4000, "0000000000000111");
+        long written = virtualMachine.stateHash();
+        Assertions.assertNotEquals(initial, written);
+        virtualMachine.writeProgram(0x4000, "0000000000000000");
+        Assertions.assertEquals(initial, virtualMachine.stateHash());
+
+        virtualMachine.memory.copy(0x3000, 0x3002, 6);
+        virtualMachine.setRegisterValue(LC3Register.R1, (short) 1);
+        LC3VirtualMachine fresh = new LC3VirtualMachine();
+        for(int address = 0x3000; address < 0x3008; address++) {
+            fresh.memory.writeInstruction(address, virtualMachine.memory.readInstruction(address));
+        }
+        fresh.setRegisterValue(LC3Register.R1, (short) 1);
+        Assertions.assertEquals(fresh.stateHash(), virtualMachine.stateHash());
+
+        virtualMachine.restore(snapshot);
+        Assertions.assertEquals(initial, virtualMachine.stateHash());
+    }
+
+    @Test
+    void testUnsupportedMemory() {
+        LC3VirtualMachine virtualMachine = new LC3VirtualMachine(new LongVirtualMachineMemory(1 << 14, (byte) 16));
+        Assertions.assertThrows(VirtualMachineException.class, virtualMachine::stateHash);
+    }
+}
@@ -0,0 +1,213 @@
+package by.babanin.vm.lc3;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class LC3TrapVectorTest {
+
+    private static final String TRAP_VECTOR_TABLE =
+            "0000010000000000" + // x0020 GETC  x0400
+            "0000010000010000" + // x0021 OUT   x0410
+            "0000010000100000";  // x0022 PUTS  x0420
+
+    /**
+     * GETC, OUT and PUTS of the operating system of the LC-3
+     */
+    private static final String GETC_ROUTINE =
+            "1010000000000011" + // x0400 LDI R0, #3      KBSR
+            "0000011111111110" + // x0401 BRzp #-2
+            "1010000000000010" + // x0402 LDI R0, #2      KBDR
+            "1100000111000000" + // x0403 RET
+            "1111111000000000" + // x0404 xFE00
+            "1111111000000010";  // x0405 xFE02
+    private static final String OUT_ROUTINE =
+            "0011001000000101" + // x0410 ST R1, #5       SAVE_R1
+            "1010001000000101" + // x0411 LDI R1, #5      DSR
+            "0000011111111110" + // x0412 BRzp #-2
+            "1011000000000100" + // x0413 STI R0, #4      DDR
+            "0010001000000001" + // x0414 LD R1, #1       SAVE_R1
+            "1100000111000000" + // x0415 RET
+            "0000000000000000" + // x0416 SAVE_R1
+            "1111111000000100" + // x0417 xFE04
+            "1111111000000110";  // x0418 xFE06
+    private static final String PUTS_ROUTINE =
+            "0011000000001100" + // x0420 ST R0, #12      SAVE_R0
+            "0011001000001100" + // x0421 ST R1, #12      SAVE_R1
+            "0011111000001100" + // x0422 ST R7, #12      SAVE_R7
+            "0001001000100000" + // x0423 ADD R1, R0, #0
+            "0110000001000000" + // x0424 LDR R0, R1, #0
+            "0000010000000011" + // x0425 BRz #3
+            "1111000000100001" + // x0426 OUT
+            "0001001001100001" + // x0427 ADD R1, R1, #1
+            "0000111111111011" + // x0428 BRnzp #-5
+            "0010000000000011" + // x0429 LD R0, #3       SAVE_R0
+            "0010001000000011" + // x042A LD R1, #3       SAVE_R1
+            "0010111000000011" + // x042B LD R7, #3       SAVE_R7
+            "1100000111000000";  // x042C RET
+    /* the display is always ready and the test console has every key ready, so BRz waits just like BRzp */
+    private static final String NOT_STANDARD_BRANCH = "0000010111111110"; // BRz #-2
+
+    private static final String PROGRAM =
+            "1111000000100000" + // x3000 GETC
+            "1111000000100001" + // x3001 OUT
+            "1110000000000010" + // x3002 LEA R0, #2
+            "1111000000100010" + // x3003 PUTS
+            "1111000000100101" + // x3004 HALT
+            "0000000001001000" + // x3005 'H'
+            "0000000001101001" + // x3006 'i'
+            "0000000000100001" + // x3007 '!'
+            "0000000000000000";  // x3008
+
+    @Test
+    void testStandardRoutines() {
+        MachineState expected = null;
+        for(boolean standard : new boolean[] {true, false}) {
+            for(LC3Engine engine : LC3Engine.values()) {
+                LC3InMemoryConsole console = new LC3InMemoryConsole("k");
+                LC3VirtualMachine virtualMachine = engine.create(console);
+                loadOperatingSystem(virtualMachine, standard);
+                virtualMachine.setRegisterValue(LC3Register.R1, (short) 0x1234);
+                virtualMachine.writeProgram(0x3000, PROGRAM);
+                virtualMachine.run();
+
+                Assertions.assertEquals("kHi!HALT\n", console.getOutputText());
+                Assertions.assertEquals(0x3004, virtualMachine.getRegisterValue(LC3Register.R7));
+                Assertions.assertEquals(0x1234, virtualMachine.getRegisterValue(LC3Register.R1));
+                /* the last OUT of PUTS saved the pointer to '!' */
+                Assertions.assertEquals(0x3007, virtualMachine.memory.readInstruction(0x0416));
+                if(standard) {
+                    /* every routine runs as a single TRAP */
+                    Assertions.assertEquals(5, virtualMachine.getInstructionCount());
+                }
+                MachineState state = new MachineState(virtualMachine);
+                if(expected == null) {
+                    expected = state;
+                }
+                else {
+                    Assertions.assertEquals(expected, state, "engine " + engine + ", standard routines " + standard);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testCustomVector() {
+        for(LC3Engine engine : LC3Engine.values()) {
+            LC3VirtualMachine virtualMachine = engine.create(new LC3InMemoryConsole());
+            virtualMachine.writeProgram(0x0026, "0000010100000000"); // x0500
+            virtualMachine.writeProgram(0x0500,
+                    "0001010010100001" + // ADD R2, R2, #1
+                    "1100000111000000"); // RET
+            virtualMachine.writeProgram(0x3000,
+                    "1111000000100110" + // TRAP x26
+                    "1111000000100110" + // TRAP x26
+                    "1111000000100101"); // HALT
+
+            virtualMachine.run();
+
+            Assertions.assertEquals(2, virtualMachine.getRegisterValue(LC3Register.R2));
+            Assertions.assertEquals(0x3002, virtualMachine.getRegisterValue(LC3Register.R7));
+        }
+    }
+
+    @Test
+    void testChangedVector() {
+        for(LC3Engine engine : LC3Engine.values()) {
+            LC3InMemoryConsole console = new LC3InMemoryConsole();
+            LC3VirtualMachine virtualMachine = engine.create(console);
+            loadOperatingSystem(virtualMachine, true);
+            virtualMachine.writeProgram(0x0500,
+                    "0001010010100001" + // ADD R2, R2, #1
+                    "1100000111000000"); // RET
+            virtualMachine.writeProgram(0x3000,
+                    "1110000000000111" + // x3000 LEA R0, #7
+                    "1111000000100010" + // x3001 PUTS
+                    "0010001000000011" + // x3002 LD R1, #3
+                    "1011001000000011" + // x3003 STI R1, #3
+                    "1111000000100010" + // x3004 PUTS
+                    "1111000000100101" + // x3005 HALT
+                    "0000010100000000" + // x3006 x0500
+                    "0000000000100010" + // x3007 x0022
+                    "0000000001101111" + // x3008 'o'
+                    "0000000001101011" + // x3009 'k'
+                    "0000000000000000"); // x300A
+
+            virtualMachine.run();
+
+            Assertions.assertEquals("okHALT\n", console.getOutputText());
+            Assertions.assertEquals(1, virtualMachine.getRegisterValue(LC3Register.R2));
+        }
+    }
+
+    @Test
+    void testMachineControlRegister() {
+        for(LC3Engine engine : LC3Engine.values()) {
+            LC3InMemoryConsole console = new LC3InMemoryConsole();
+            LC3VirtualMachine virtualMachine = engine.create(console);
+            virtualMachine.writeProgram(0x0025, "0000011000000000"); // x0600
+            virtualMachine.writeProgram(0x0600,
+                    "0101000000100000" + // x0600 AND R0, R0, #0
+                    "1011000000000001" + // x0601 STI R0, #1      MCR
+                    "1100000111000000" + // x0602 RET
+                    "1111111111111110"); // x0603 xFFFE
+            virtualMachine.writeProgram(0x3000,
+                    "1111000000100101" + // HALT
+                    "0001010010100001" + // ADD R2, R2, #1
+                    "1111000000100101"); // HALT
+
+            virtualMachine.run();
+
+            Assertions.assertEquals("", console.getOutputText());
+            Assertions.assertEquals(0, virtualMachine.getRegisterValue(LC3Register.R2));
+        }
+    }
+
+    private static void loadOperatingSystem(LC3VirtualMachine virtualMachine, boolean standard) {
+        virtualMachine.writeProgram(0x0020, TRAP_VECTOR_TABLE);
+        virtualMachine.writeProgram(0x0400, GETC_ROUTINE);
+        virtualMachine.writeProgram(0x0410, OUT_ROUTINE);
+        virtualMachine.writeProgram(0x0420, PUTS_ROUTINE);
+        if(!standard) {
+            virtualMachine.writeProgram(0x0401, NOT_STANDARD_BRANCH);
+            virtualMachine.writeProgram(0x0412, NOT_STANDARD_BRANCH);
+        }
+    }
+
+    /**
+     * Registers and the words of the operating system apart from the changed branches
+     */
+    private static final class MachineState {
+
+        private final String state;
+
+        private MachineState(LC3VirtualMachine virtualMachine) {
+            StringBuilder builder = new StringBuilder();
+            for(LC3Register register : new LC3Register[] {LC3Register.R0, LC3Register.R1, LC3Register.R2,
+                    LC3Register.R3, LC3Register.R4, LC3Register.R5, LC3Register.R6, LC3Register.R7,
+                    LC3Register.R_PC, LC3Register.R_COND}) {
+                builder.append(register).append('=').append(virtualMachine.getRegisterValue(register)).append(' ');
+            }
+            for(int address = 0x0400; address < 0x0430; address++) {
+                if(address != 0x0401 && address != 0x0412) {
+                    builder.append(virtualMachine.memory.readInstruction(address)).append(' ');
+                }
+            }
+            state = builder.toString();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof MachineState && state.equals(((MachineState) o).state);
+        }
+
+        @Override
+        public int hashCode() {
+            return state.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return state;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package by.babanin.vm.memory;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs the suite on segments of 4 cells, so that split instructions also cross segments
+ */
+class DirectVirtualMachineMemoryTest extends PackedVirtualMachineMemoryTest {
+
+    private static final int SEGMENT_SHIFT = 2;
+
+    @Override
+    PackedVirtualMachineMemory createMemory(int cellsAmount, byte instructionSize) {
+        return new DirectVirtualMachineMemory(cellsAmount, instructionSize, SEGMENT_SHIFT);
+    }
+
+    @Test
+    void testSegmentBoundary() {
+        PackedVirtualMachineMemory memory = createMemory(10, (byte) 16);
+        long address = 4 * PackedVirtualMachineMemory.CELL_SIZE - 8;
+        memory.writeInstruction(address, 0xBEEF);
+        memory.writeInstruction(address + 16, 0x1234);
+        Assertions.assertEquals(0xBEEF, memory.readInstruction(address));
+        Assertions.assertEquals(0x1234, memory.readInstruction(address + 16));
+        Assertions.assertEquals(0xEF12, memory.readInstruction(address + 8));
+    }
+
+    @Test
+    void testDefaultSegments() {
+        PackedVirtualMachineMemory memory = new DirectVirtualMachineMemory(10, (byte) 16);
+        memory.writeInstruction(9 * PackedVirtualMachineMemory.CELL_SIZE - 8, 0xBEEF);
+        Assertions.assertEquals(0xBEEF, memory.readInstruction(9 * PackedVirtualMachineMemory.CELL_SIZE - 8));
+    }
+}
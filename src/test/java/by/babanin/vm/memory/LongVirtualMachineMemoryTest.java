@@ -1,8 +1,11 @@
 package by.babanin.vm.memory;
 
+import java.util.Random;
+
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
 import by.babanin.vm.exception.VirtualMachineException;
@@ -85,9 +88,48 @@ class LongVirtualMachineMemoryTest {
         Assertions.assertThrows(VirtualMachineException.class, () -> memory.readInstruction(maxAddress + 1));
     }
 
+    /**
+     * Random overlapping writes of 13 bit instructions against a memory of single bits
+     */
+    @Test
+    void testRandomAccess() {
+        byte instructionSize = 13;
+        int cellsAmount = 4;
+        LongVirtualMachineMemory memory = new LongVirtualMachineMemory(cellsAmount, instructionSize);
+        boolean[] bits = new boolean[cellsAmount * LongVirtualMachineMemory.CELL_SIZE];
+        Random random = new Random(7);
+        for(int i = 0; i < 10_000; i++) {
+            int address = random.nextInt(bits.length - instructionSize + 1);
+            long instruction = random.nextInt(1 << instructionSize);
+            memory.writeInstruction(address, instruction);
+            for(int bit = 0; bit < instructionSize; bit++) {
+                bits[address + bit] = (instruction >>> (instructionSize - 1 - bit) & 1) != 0;
+            }
+
+            address = random.nextInt(bits.length - instructionSize + 1);
+            long expected = 0;
+            for(int bit = 0; bit < instructionSize; bit++) {
+                expected = expected << 1 | (bits[address + bit] ? 1 : 0);
+            }
+            Assertions.assertEquals(expected, memory.readInstruction(address), "address " + address);
+        }
+    }
+
     private void checkWriteReadInstruction(long address, long instruction) {
         memory.writeInstruction(address, instruction);
         long actual = memory.readInstruction(address);
         Assertions.assertEquals(instruction, actual);
     }
-}
\ No newline at end of file
+
+    /**
+     * Suite every packed backend runs
+     */
+    @Nested
+    class PackedSuite extends PackedVirtualMachineMemoryTest {
+
+        @Override
+        PackedVirtualMachineMemory createMemory(int cellsAmount, byte instructionSize) {
+            return new LongVirtualMachineMemory(cellsAmount, instructionSize);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package by.babanin.vm.memory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs the suite on segments of 4 cells mapped from a file
+ */
+class MappedVirtualMachineMemoryTest extends PackedVirtualMachineMemoryTest {
+
+    private static final int SEGMENT_SHIFT = 2;
+
+    @TempDir
+    Path directory;
+
+    @Override
+    PackedVirtualMachineMemory createMemory(int cellsAmount, byte instructionSize) {
+        return new MappedVirtualMachineMemory(directory.resolve("memory.img"), cellsAmount, instructionSize,
+                SEGMENT_SHIFT, false);
+    }
+
+    @Test
+    void testPersistence() throws IOException {
+        Path file = directory.resolve("persistent.img");
+        PackedVirtualMachineMemory memory = new MappedVirtualMachineMemory(file, 10, (byte) 16, SEGMENT_SHIFT, true);
+        memory.writeInstruction(4 * PackedVirtualMachineMemory.CELL_SIZE - 8, 0xBEEF);
+        memory.flush();
+
+        Assertions.assertEquals(10 * Long.BYTES, Files.size(file));
+        byte[] bytes = Files.readAllBytes(file);
+        Assertions.assertEquals((byte) 0xBE, bytes[4 * Long.BYTES - 1]);
+        Assertions.assertEquals((byte) 0xEF, bytes[4 * Long.BYTES]);
+
+        PackedVirtualMachineMemory reopened = new MappedVirtualMachineMemory(file, 10, (byte) 16, SEGMENT_SHIFT, false);
+        Assertions.assertEquals(0xBEEF, reopened.readInstruction(4 * PackedVirtualMachineMemory.CELL_SIZE - 8));
+    }
+}
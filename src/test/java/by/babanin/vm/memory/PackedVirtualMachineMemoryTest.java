@@ -0,0 +1,180 @@
+package by.babanin.vm.memory;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import by.babanin.vm.exception.VirtualMachineException;
+
+abstract class PackedVirtualMachineMemoryTest {
+
+    private static final int CELLS_AMOUNT = (int) Math.pow(2, 14);
+    private static final byte INSTRUCTION_SIZE = 16;
+    private PackedVirtualMachineMemory memory;
+
+    abstract PackedVirtualMachineMemory createMemory(int cellsAmount, byte instructionSize);
+
+    @BeforeEach
+    void setUp() {
+        memory = createMemory(CELLS_AMOUNT, INSTRUCTION_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        memory = null;
+    }
+
+    @Test
+    void testConstructor() {
+        Assertions.assertThrows(VirtualMachineException.class, () -> createMemory(0, INSTRUCTION_SIZE));
+        Assertions.assertThrows(VirtualMachineException.class, () -> createMemory(-10, INSTRUCTION_SIZE));
+        Assertions.assertThrows(VirtualMachineException.class, () -> createMemory(CELLS_AMOUNT, (byte) 0));
+        Assertions.assertThrows(VirtualMachineException.class, () -> createMemory(CELLS_AMOUNT, (byte) 65));
+    }
+
+    @Test
+    void testInCellBeginning() {
+        long address = 0x3000;
+        long instruction = 0b1001_1100_0100_1011;
+        checkWriteReadInstruction(address, instruction);
+    }
+
+    @Test
+    void testInCellAnd() {
+        long address = 0x3030;
+        long instruction = 0b1001_1100_0100_1011;
+        checkWriteReadInstruction(address, instruction);
+    }
+
+    /**
+     * 0x303A
+     * ^
+     * 100111|0001001011
+     */
+    @Test
+    void testSplitInstruction() {
+        long address = 0x303A;
+        long instruction = 0b1001_1100_0100_1011;
+        checkWriteReadInstruction(address, instruction);
+    }
+
+    /**
+     * 0x3031   0x303A
+     * ^        ^
+     * 100111000100101|1
+     *          100111|0001001011
+     * 100111000100111|0001001011
+     */
+    @Test
+    void testMemoryOverwrite() {
+        long address1 = 0x3031;
+        long address2 = 0x303A;
+        long instruction = 0b1001_1100_0100_1011;
+        memory.writeInstruction(address1, instruction);
+        memory.writeInstruction(address2, instruction);
+        long actual1 = memory.readInstruction(address1);
+        long actual2 = memory.readInstruction(address2);
+        Assertions.assertEquals(0b1001_1100_0100_1110, actual1);
+        Assertions.assertEquals(instruction, actual2);
+    }
+
+    @Test
+    void testOutOfRange() {
+        long maxAddress = CELLS_AMOUNT * PackedVirtualMachineMemory.CELL_SIZE - INSTRUCTION_SIZE;
+        long instruction = 0b1001_1100_0100_1011;
+        Assertions.assertThrows(VirtualMachineException.class, () -> memory.writeInstruction(maxAddress + 1, instruction));
+        Assertions.assertThrows(VirtualMachineException.class, () -> memory.readInstruction(maxAddress + 1));
+    }
+
+    /**
+     * Random overlapping writes of 13 bit instructions against a memory of single bits
+     */
+    @Test
+    void testRandomAccess() {
+        byte instructionSize = 13;
+        int cellsAmount = 16;
+        PackedVirtualMachineMemory memory = createMemory(cellsAmount, instructionSize);
+        boolean[] bits = new boolean[cellsAmount * PackedVirtualMachineMemory.CELL_SIZE];
+        Random random = new Random(7);
+        for(int i = 0; i < 10_000; i++) {
+            int address = random.nextInt(bits.length - instructionSize + 1);
+            long instruction = random.nextInt(1 << instructionSize);
+            memory.writeInstruction(address, instruction);
+            for(int bit = 0; bit < instructionSize; bit++) {
+                bits[address + bit] = (instruction >>> (instructionSize - 1 - bit) & 1) != 0;
+            }
+
+            address = random.nextInt(bits.length - instructionSize + 1);
+            long expected = 0;
+            for(int bit = 0; bit < instructionSize; bit++) {
+                expected = expected << 1 | (bits[address + bit] ? 1 : 0);
+            }
+            Assertions.assertEquals(expected, memory.readInstruction(address), "address " + address);
+        }
+    }
+
+    /**
+     * Blocks of 13 bit instructions starting in the middle of a cell, checked against single instruction reads
+     */
+    @Test
+    void testBlocks() {
+        byte instructionSize = 13;
+        PackedVirtualMachineMemory memory = createMemory(16, instructionSize);
+        long address = 5;
+        long[] block = new long[70];
+        for(int i = 0; i < block.length; i++) {
+            block[i] = (i * 97 + 11) & 0x1FFF;
+        }
+        memory.writeBlock(address, block, 0, block.length);
+        for(int i = 0; i < block.length; i++) {
+            Assertions.assertEquals(block[i], memory.readInstruction(address + i * instructionSize));
+        }
+        long[] actual = new long[block.length + 2];
+        memory.readBlock(address, actual, 1, block.length);
+        for(int i = 0; i < block.length; i++) {
+            Assertions.assertEquals(block[i], actual[i + 1]);
+        }
+
+        memory.fill(address + instructionSize, 3, 0x1555);
+        Assertions.assertEquals(block[0], memory.readInstruction(address));
+        Assertions.assertEquals(0x1555, memory.readInstruction(address + 3 * instructionSize));
+        Assertions.assertEquals(block[4], memory.readInstruction(address + 4 * instructionSize));
+    }
+
+    @Test
+    void testOverlappingCopy() {
+        long[] block = new long[3000];
+        for(int i = 0; i < block.length; i++) {
+            block[i] = i;
+        }
+        memory.writeBlock(0, block, 0, block.length);
+        memory.copy(0, 10 * INSTRUCTION_SIZE, block.length);
+        for(int i = 0; i < block.length; i++) {
+            Assertions.assertEquals(i, memory.readInstruction((i + 10) * INSTRUCTION_SIZE));
+        }
+        memory.copy(10 * INSTRUCTION_SIZE, 3, block.length);
+        short[] actual = new short[block.length];
+        memory.readBlock(3, actual, 0, actual.length);
+        for(int i = 0; i < block.length; i++) {
+            Assertions.assertEquals(i, actual[i]);
+        }
+    }
+
+    @Test
+    void testBlockOutOfRange() {
+        long[] block = new long[2];
+        long maxAddress = CELLS_AMOUNT * PackedVirtualMachineMemory.CELL_SIZE - INSTRUCTION_SIZE;
+        Assertions.assertThrows(VirtualMachineException.class, () -> memory.writeBlock(maxAddress, block, 0, 2));
+        Assertions.assertThrows(VirtualMachineException.class, () -> memory.readBlock(maxAddress, block, 0, 2));
+        Assertions.assertThrows(VirtualMachineException.class, () -> memory.copy(0, maxAddress, 2));
+    }
+
+    private void checkWriteReadInstruction(long address, long instruction) {
+        memory.writeInstruction(address, instruction);
+        long actual = memory.readInstruction(address);
+        Assertions.assertEquals(instruction, actual);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,48 @@
+package by.babanin.vm.trace;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import by.babanin.vm.factory.VirtualMachineFactory;
+import by.babanin.vm.lc3.LC3VirtualMachine;
+
+class ExecutionTracerTest {
+
+    private static final String PROGRAM =
+            "0010000000000100" + // LD R0, #4
+            "0001000000111111" + // ADD R0, R0, #-1
+            "0011000000000011" + // ST R0, #3
+            "0000001111111101" + // BRp #-3
+            "1111000000100101" + // HALT
+            "0000000000000010";  // 2
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testTrace() {
+        Path file = directory.resolve("program.trace");
+        LC3VirtualMachine virtualMachine;
+        try(ExecutionTracer tracer = new ExecutionTracer(file, 8)) {
+            virtualMachine = (LC3VirtualMachine) new VirtualMachineFactory().lc3TracingVirtualMachine(tracer);
+            virtualMachine.writeProgram(0x3000, PROGRAM);
+            virtualMachine.run();
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        TraceDecoder.decode(file, new PrintStream(output));
+        String[] lines = output.toString().split(System.lineSeparator());
+        Assertions.assertEquals(virtualMachine.getInstructionCount(), lines.length);
+        Assertions.assertEquals("x3000 x2004 LD   R0 = x0002", lines[0]);
+        Assertions.assertEquals("x3001 x103F ADD  R0 = x0001", lines[1]);
+        Assertions.assertEquals("x3002 x3003 ST   [x3006] = x0001", lines[2]);
+        Assertions.assertEquals("x3003 x03FD BR", lines[3]);
+        Assertions.assertEquals("x3002 x3003 ST   [x3006] = x0000", lines[5]);
+        Assertions.assertEquals("x3004 xF025 TRAP", lines[7]);
+    }
+}